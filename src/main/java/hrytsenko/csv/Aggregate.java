@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.lang.String.format;
+
+/**
+ * Aggregate function for groups of records, see {@link Records#aggregate(java.util.Map, Aggregate...)}.
+ * 
+ * <p>
+ * Each group folds its records into accumulator of fixed size, so records are not kept in memory. Absent and empty
+ * values are skipped by all functions, except count of records. Values of typed fields are taken in parsed form, see
+ * {@link FieldType}.
+ * 
+ * @author hrytsenko.anton
+ */
+public final class Aggregate {
+
+    /**
+     * Supported functions.
+     */
+    enum Function {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private final Function function;
+    private final String field;
+    private final FieldType type;
+    private final String name;
+
+    /**
+     * Creates aggregate function.
+     * 
+     * @param function
+     *            the function.
+     * @param spec
+     *            the field given as <code>field[:type]</code>, or <code>null</code> to count records.
+     */
+    Aggregate(Function function, String spec) {
+        this.function = function;
+        if (spec == null) {
+            field = null;
+            type = null;
+            name = function.name().toLowerCase();
+            return;
+        }
+
+        String[] parts = spec.split(":");
+        if (parts[0].isEmpty() || parts.length > 2) {
+            throw new IllegalArgumentException(format("Invalid field %s.", spec));
+        }
+        field = parts[0];
+        type = parts.length > 1 ? FieldType.of(parts[1]) : null;
+        name = function.name().toLowerCase() + "_" + field;
+    }
+
+    private Aggregate(Aggregate aggregate, String name) {
+        this.function = aggregate.function;
+        this.field = aggregate.field;
+        this.type = aggregate.type;
+        this.name = name;
+    }
+
+    /**
+     * Creates the same function, whose result has given name.
+     * 
+     * @param name
+     *            the name of field for result.
+     * 
+     * @return the renamed function.
+     */
+    public Aggregate named(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Empty field.");
+        }
+        return new Aggregate(this, name);
+    }
+
+    /**
+     * Returns the name of field for result, by default it is <code>function_field</code>, e.g. <code>sum_amount</code>.
+     * 
+     * @return the name of field.
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * Creates accumulator for group.
+     * 
+     * @return the empty accumulator.
+     */
+    Accumulator newAccumulator() {
+        return new Accumulator();
+    }
+
+    /**
+     * Accumulated state of function for one group.
+     */
+    final class Accumulator {
+
+        private long count;
+        private long longSum;
+        private double doubleSum;
+        private boolean integral = true;
+
+        private String extreme;
+        private long extremeNumber;
+
+        /**
+         * Adds record into group.
+         * 
+         * @param record
+         *            the record.
+         */
+        void add(Record record) {
+            if (field == null) {
+                ++count;
+                return;
+            }
+
+            int pos = record.header().indexOf(field);
+            if (pos < 0) {
+                return;
+            }
+            FieldType recordType = record.header().type(pos);
+            if (recordType != null) {
+                ++count;
+                addParsed(record, pos, recordType);
+                return;
+            }
+
+            String value = record.getAt(pos);
+            if (value.isEmpty()) {
+                return;
+            }
+            ++count;
+
+            if (function == Function.SUM || function == Function.AVG) {
+                addNumber(value);
+            } else if (function == Function.MIN || function == Function.MAX) {
+                addExtreme(value, type != null ? type.parse(value) : 0);
+            }
+        }
+
+        /**
+         * Returns result of function.
+         * 
+         * @return the result, or empty string if group has no values.
+         */
+        String result() {
+            switch (function) {
+            case COUNT:
+                return String.valueOf(count);
+            case SUM:
+                if (count == 0) {
+                    return "";
+                }
+                return integral ? String.valueOf(longSum) : String.valueOf(doubleSum);
+            case AVG:
+                if (count == 0) {
+                    return "";
+                }
+                return String.valueOf((integral ? longSum : doubleSum) / count);
+            default:
+                return extreme != null ? extreme : "";
+            }
+        }
+
+        /**
+         * Adds value of typed field, that is already parsed by record. Values are parsed again only for functions,
+         * whose type does not match.
+         */
+        private void addParsed(Record record, int pos, FieldType recordType) {
+            if (function == Function.SUM || function == Function.AVG) {
+                if (recordType == FieldType.LONG) {
+                    addLong(record.numberAt(pos));
+                } else if (recordType == FieldType.DOUBLE) {
+                    addDouble(Double.longBitsToDouble(record.numberAt(pos)));
+                } else {
+                    addNumber(record.getAt(pos));
+                }
+            } else if (function == Function.MIN || function == Function.MAX) {
+                String value = record.getAt(pos);
+                if (type == null) {
+                    addExtreme(value, 0);
+                } else {
+                    addExtreme(value, type == recordType ? record.numberAt(pos) : type.parse(value));
+                }
+            }
+        }
+
+        private void addNumber(String value) {
+            long number;
+            try {
+                number = Long.parseLong(value);
+            } catch (NumberFormatException exception) {
+                addDouble(Double.parseDouble(value));
+                return;
+            }
+            addLong(number);
+        }
+
+        /**
+         * Adds integer to sum. Sum becomes floating-point, if it overflows.
+         */
+        private void addLong(long number) {
+            if (integral) {
+                long sum = longSum + number;
+                if (((longSum ^ sum) & (number ^ sum)) >= 0) {
+                    longSum = sum;
+                    return;
+                }
+            }
+            addDouble(number);
+        }
+
+        private void addDouble(double number) {
+            if (integral) {
+                integral = false;
+                doubleSum = longSum;
+            }
+            doubleSum += number;
+        }
+
+        private void addExtreme(String value, long number) {
+            if (extreme != null) {
+                int order = compare(value, number);
+                if (function == Function.MIN ? order >= 0 : order <= 0) {
+                    return;
+                }
+            }
+            extreme = value;
+            extremeNumber = number;
+        }
+
+        private int compare(String value, long number) {
+            if (type == null) {
+                return value.compareTo(extreme);
+            }
+            if (type == FieldType.DOUBLE) {
+                return Double.compare(Double.longBitsToDouble(number), Double.longBitsToDouble(extremeNumber));
+            }
+            return Long.compare(number, extremeNumber);
+        }
+
+    }
+
+}
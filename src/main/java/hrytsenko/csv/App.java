@@ -28,6 +28,7 @@ import static java.nio.file.Files.newBufferedReader;
 import static java.util.Collections.singletonMap;
 import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
+import groovy.transform.CompileStatic;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -37,6 +38,7 @@ import java.nio.file.Paths;
 
 import org.apache.commons.cli.ParseException;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
 import org.codehaus.groovy.control.customizers.ImportCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,9 +92,11 @@ public final class App {
         Args parsedArgs = parseArgs(args);
 
         Binding binding = new Binding(singletonMap("args", parsedArgs.getValues()));
-        GroovyShell shell = new GroovyShell(binding, configuration());
+        GroovyShell shell = new GroovyShell(binding, configuration(parsedArgs.isCompileStatic()));
 
-        executeEmbeddedScripts(shell);
+        if (!parsedArgs.isCompileStatic()) {
+            executeEmbeddedScripts(shell);
+        }
 
         for (String script : parsedArgs.getScripts()) {
             Path path = Paths.get(script);
@@ -111,7 +115,16 @@ public final class App {
         }
     }
 
-    private static CompilerConfiguration configuration() {
+    /**
+     * Creates configuration for scripts.
+     * 
+     * <p>
+     * If scripts are compiled statically, then extension <code>ext/RecordChecking.groovy</code> turns access to fields
+     * of records into direct calls of {@link Record#getAt(String)} and {@link Record#putAt(String, Object)}, and
+     * operations for collections of records into calls of {@link Records}. So extensions from
+     * <code>ext/Collections.groovy</code> are not needed.
+     */
+    private static CompilerConfiguration configuration(boolean compileStatic) {
         ImportCustomizer importCustomizer = new ImportCustomizer();
 
         importCustomizer.addImports(Record.class.getCanonicalName());
@@ -122,6 +135,10 @@ public final class App {
 
         CompilerConfiguration configuration = new CompilerConfiguration();
         configuration.addCompilationCustomizers(importCustomizer);
+        if (compileStatic) {
+            configuration.addCompilationCustomizers(new ASTTransformationCustomizer(singletonMap("extensions",
+                    "ext/RecordChecking.groovy"), CompileStatic.class));
+        }
         return configuration;
     }
 
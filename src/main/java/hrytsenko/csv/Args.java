@@ -48,9 +48,14 @@ public class Args {
      * The short name of argument that contains list of values.
      */
     public static final String VALUES_OPT_NAME = "v";
+    /**
+     * The long name of argument that enables static compilation of scripts.
+     */
+    public static final String STATIC_OPT_NAME = "static";
 
     private final List<String> scripts;
     private final List<String> values;
+    private final boolean compileStatic;
 
     /**
      * Create arguments.
@@ -61,8 +66,23 @@ public class Args {
      *            the list of string values.
      */
     public Args(String[] scripts, String[] values) {
+        this(scripts, values, false);
+    }
+
+    /**
+     * Create arguments.
+     * 
+     * @param scripts
+     *            the list of scripts.
+     * @param values
+     *            the list of string values.
+     * @param compileStatic
+     *            <code>true</code> if scripts should be compiled statically.
+     */
+    public Args(String[] scripts, String[] values, boolean compileStatic) {
         this.scripts = asList(scripts);
         this.values = asList(values);
+        this.compileStatic = compileStatic;
     }
 
     /**
@@ -83,6 +103,15 @@ public class Args {
         return unmodifiableList(values);
     }
 
+    /**
+     * Checks that scripts should be compiled statically.
+     * 
+     * @return <code>true</code> if scripts should be compiled statically.
+     */
+    public boolean isCompileStatic() {
+        return compileStatic;
+    }
+
     /**
      * Parses command-line arguments.
      * 
@@ -101,7 +130,7 @@ public class Args {
         String[] scripts = getValues(line, SCRIPTS_OPT_NAME);
         String[] values = getValues(line, VALUES_OPT_NAME);
 
-        return new Args(scripts, values);
+        return new Args(scripts, values, line.hasOption(STATIC_OPT_NAME));
     }
 
     private static String[] getValues(CommandLine line, String option) {
@@ -112,6 +141,7 @@ public class Args {
         Options options = new Options();
         options.addOption(newOption(SCRIPTS_OPT_NAME, "filenames of scripts to execute", true));
         options.addOption(newOption(VALUES_OPT_NAME, "values to be passed into scripts", false));
+        options.addOption(new Option(null, STATIC_OPT_NAME, false, "compile scripts statically"));
         return options;
     }
 
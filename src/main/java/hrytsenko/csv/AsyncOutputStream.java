@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Output stream that writes data into file in background.
+ * 
+ * <p>
+ * Data is collected into one buffer, while the other one is written into file by background thread. So the calling
+ * thread waits only if it produces data faster than they could be written.
+ * 
+ * <p>
+ * If data could not be written, then error is reported by the next call of this stream or, at the latest, by
+ * {@link #close()}.
+ * 
+ * @author hrytsenko.anton
+ */
+final class AsyncOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int BUFFERS = 2;
+
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final WritableByteChannel channel;
+    private final ExecutorService pool;
+    private final Future<Void> result;
+
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+
+    private volatile Throwable failure;
+
+    private ByteBuffer buffer;
+    private boolean closed;
+
+    /**
+     * Creates stream for channel.
+     * 
+     * @param channel
+     *            the channel for data, that will be closed with stream.
+     */
+    AsyncOutputStream(WritableByteChannel channel) {
+        this.channel = channel;
+
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        for (int i = 1; i < BUFFERS; ++i) {
+            free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+
+        pool = Threads.newPool("writer", 1);
+        result = pool.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                writeBuffers();
+                return null;
+            }
+
+        });
+    }
+
+    /**
+     * Opens file for writing in background.
+     * 
+     * <p>
+     * If file already exists, then it will be overridden.
+     * 
+     * @param path
+     *            the path to file.
+     * 
+     * @return the stream for data.
+     * 
+     * @throws IOException
+     *             if file could not be opened.
+     */
+    static AsyncOutputStream open(Path path) throws IOException {
+        return new AsyncOutputStream(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            submitBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                submitBuffer();
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(data, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Writes collected data and waits until all data are written into file.
+     */
+    @Override
+    public void flush() throws IOException {
+        submitBuffer();
+
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[BUFFERS - 1];
+            for (int i = 0; i < buffers.length; ++i) {
+                buffers[i] = takeFree();
+            }
+            for (ByteBuffer released : buffers) {
+                free.add(released);
+            }
+        } finally {
+            checkResult();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            buffer.flip();
+            put(buffer);
+            put(END);
+            Threads.await(result);
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw new IOException("Could not write file.", failure);
+            }
+        } finally {
+            pool.shutdownNow();
+            channel.close();
+        }
+    }
+
+    private void submitBuffer() throws IOException {
+        checkResult();
+
+        buffer.flip();
+        put(buffer);
+        buffer = takeFree();
+    }
+
+    private void checkResult() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        if (failure != null) {
+            throw new IOException("Could not write file.", failure);
+        }
+        if (result.isDone()) {
+            Threads.await(result);
+        }
+    }
+
+    private void put(ByteBuffer data) throws IOException {
+        try {
+            filled.put(data);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted.", exception);
+        }
+    }
+
+    private ByteBuffer takeFree() throws IOException {
+        try {
+            return free.take();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted.", exception);
+        }
+    }
+
+    /**
+     * Writes buffers until the end of data. After any failure, buffers are still released, so the calling thread is not
+     * blocked.
+     */
+    private void writeBuffers() throws InterruptedException {
+        while (true) {
+            ByteBuffer data = filled.take();
+            if (data == END) {
+                break;
+            }
+
+            if (failure == null) {
+                try {
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                } catch (Throwable exception) {
+                    failure = exception;
+                }
+            }
+            data.clear();
+            free.put(data);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+/**
+ * Utility methods for work with sequences of characters, that are not turned into strings.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Chars {
+
+    private Chars() {
+    }
+
+    /**
+     * Computes hash of characters, that is the same as {@link String#hashCode()}.
+     * 
+     * @param value
+     *            the characters.
+     * 
+     * @return the hash.
+     */
+    static int hash(CharSequence value) {
+        int hash = 0;
+        for (int i = 0; i < value.length(); ++i) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Compares string with characters.
+     * 
+     * @param expected
+     *            the string.
+     * @param value
+     *            the characters.
+     * 
+     * @return <code>true</code> if string contains the same characters.
+     */
+    static boolean contentEquals(String expected, CharSequence value) {
+        if (expected.length() != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); ++i) {
+            if (expected.charAt(i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
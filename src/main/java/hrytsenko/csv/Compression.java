@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Utility methods for work with compressed files.
+ * 
+ * <p>
+ * Files in GZIP format are detected by extension <code>.gz</code> or by magic bytes. Files in ZLIB format are detected
+ * by extensions <code>.deflate</code> and <code>.zz</code>, because its header is too weak to distinguish it from
+ * text.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Compression {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+    private Compression() {
+    }
+
+    /**
+     * Checks that file is compressed.
+     * 
+     * @param path
+     *            the path to file.
+     * 
+     * @return <code>true</code> if file is compressed.
+     * 
+     * @throws IOException
+     *             if file could not be read.
+     */
+    static boolean isCompressed(Path path) throws IOException {
+        if (isGzip(path) || isDeflate(path)) {
+            return true;
+        }
+
+        try (InputStream dataStream = newInputStream(path, StandardOpenOption.READ)) {
+            return hasGzipMagic(dataStream);
+        }
+    }
+
+    /**
+     * Opens file for reading and decompresses its content, if needed.
+     * 
+     * @param path
+     *            the path to file.
+     * 
+     * @return the stream of uncompressed data.
+     * 
+     * @throws IOException
+     *             if file could not be opened.
+     */
+    static InputStream newDecompressingStream(Path path) throws IOException {
+        InputStream dataStream = new BufferedInputStream(newInputStream(path, StandardOpenOption.READ), BUFFER_SIZE);
+        try {
+            dataStream.mark(2);
+            boolean gzip = hasGzipMagic(dataStream) || isGzip(path);
+            dataStream.reset();
+
+            if (gzip) {
+                return new GZIPInputStream(dataStream, BUFFER_SIZE);
+            }
+            if (isDeflate(path)) {
+                return new InflaterInputStream(dataStream);
+            }
+            return dataStream;
+        } catch (IOException | RuntimeException exception) {
+            dataStream.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Opens file for writing and compresses its content, if required by extension.
+     * 
+     * <p>
+     * If file already exists, then it will be overridden.
+     * 
+     * @param path
+     *            the path to file.
+     * @param threads
+     *            the number of threads for compression in GZIP format.
+     * @param async
+     *            write data into file in background, see {@link AsyncOutputStream}.
+     * 
+     * @return the stream for uncompressed data.
+     * 
+     * @throws IOException
+     *             if file could not be opened.
+     */
+    static OutputStream newCompressingStream(Path path, int threads, boolean async) throws IOException {
+        OutputStream dataStream = async ? AsyncOutputStream.open(path) : newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            if (isGzip(path)) {
+                return new ParallelGzipOutputStream(dataStream, threads);
+            }
+            if (isDeflate(path)) {
+                return new DeflaterOutputStream(dataStream);
+            }
+            return dataStream;
+        } catch (IOException | RuntimeException exception) {
+            dataStream.close();
+            throw exception;
+        }
+    }
+
+    private static boolean isGzip(Path path) {
+        return hasExtension(path, ".gz");
+    }
+
+    private static boolean isDeflate(Path path) {
+        return hasExtension(path, ".deflate") || hasExtension(path, ".zz");
+    }
+
+    private static boolean hasExtension(Path path, String extension) {
+        return path.getFileName().toString().toLowerCase().endsWith(extension);
+    }
+
+    private static boolean hasGzipMagic(InputStream dataStream) throws IOException {
+        return dataStream.read() == GZIP_MAGIC_FIRST && dataStream.read() == GZIP_MAGIC_SECOND;
+    }
+
+}
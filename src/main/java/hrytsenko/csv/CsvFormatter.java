@@ -0,0 +1,220 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Formats rows of CSV data.
+ * 
+ * <p>
+ * Value is qualified only if it contains separator, qualifier or line break. Qualifiers inside value are escaped by
+ * doubling. Rows are ended by line feed. Row with the single empty value is written as empty qualified value, so it
+ * is not taken for empty line.
+ * 
+ * <p>
+ * Characters are collected in the internal buffer, that is passed to writer when it is full or flushed. So writer
+ * does not need its own buffer.
+ * 
+ * @author hrytsenko.anton
+ */
+final class CsvFormatter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer out;
+    private final char separator;
+    private final char qualifier;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int size;
+
+    private int rowValues;
+    private boolean lastEmpty;
+
+    /**
+     * Creates formatter.
+     * 
+     * @param out
+     *            the writer for data.
+     * @param separator
+     *            the separator for values.
+     * @param qualifier
+     *            the qualifier for values.
+     */
+    CsvFormatter(Writer out, char separator, char qualifier) {
+        this.out = out;
+        this.separator = separator;
+        this.qualifier = qualifier;
+    }
+
+    /**
+     * Writes the next value of row.
+     * 
+     * @param value
+     *            the value.
+     * 
+     * @throws IOException
+     *             if value could not be written.
+     */
+    void value(String value) throws IOException {
+        int length = value.length();
+        startValue(length == 0);
+
+        if (!needsQualifier(value, length)) {
+            write(value, 0, length);
+            return;
+        }
+
+        write(qualifier);
+        int start = 0;
+        for (int i = 0; i < length; ++i) {
+            if (value.charAt(i) == qualifier) {
+                write(value, start, i + 1);
+                write(qualifier);
+                start = i + 1;
+            }
+        }
+        write(value, start, length);
+        write(qualifier);
+    }
+
+    /**
+     * Writes the next value of row.
+     * 
+     * @param chars
+     *            the buffer with value.
+     * @param start
+     *            the start of value.
+     * @param end
+     *            the end of value.
+     * 
+     * @throws IOException
+     *             if value could not be written.
+     */
+    void value(char[] chars, int start, int end) throws IOException {
+        startValue(start == end);
+
+        if (!needsQualifier(chars, start, end)) {
+            write(chars, start, end);
+            return;
+        }
+
+        write(qualifier);
+        for (int i = start; i < end; ++i) {
+            if (chars[i] == qualifier) {
+                write(chars, start, i + 1);
+                write(qualifier);
+                start = i + 1;
+            }
+        }
+        write(chars, start, end);
+        write(qualifier);
+    }
+
+    /**
+     * Ends the current row.
+     * 
+     * @throws IOException
+     *             if row could not be ended.
+     */
+    void endRow() throws IOException {
+        if (rowValues == 1 && lastEmpty) {
+            write(qualifier);
+            write(qualifier);
+        }
+        write('\n');
+        rowValues = 0;
+    }
+
+    /**
+     * Passes collected characters to writer.
+     * 
+     * @throws IOException
+     *             if characters could not be written.
+     */
+    void flush() throws IOException {
+        out.write(buffer, 0, size);
+        size = 0;
+    }
+
+    private void startValue(boolean empty) throws IOException {
+        if (rowValues > 0) {
+            write(separator);
+        }
+        ++rowValues;
+        lastEmpty = empty;
+    }
+
+    private void write(char c) throws IOException {
+        if (size == buffer.length) {
+            flush();
+        }
+        buffer[size++] = c;
+    }
+
+    private void write(String value, int start, int end) throws IOException {
+        while (start < end) {
+            if (size == buffer.length) {
+                flush();
+            }
+            int count = Math.min(end - start, buffer.length - size);
+            value.getChars(start, start + count, buffer, size);
+            size += count;
+            start += count;
+        }
+    }
+
+    private void write(char[] chars, int start, int end) throws IOException {
+        while (start < end) {
+            if (size == buffer.length) {
+                flush();
+            }
+            int count = Math.min(end - start, buffer.length - size);
+            System.arraycopy(chars, start, buffer, size, count);
+            size += count;
+            start += count;
+        }
+    }
+
+    private boolean needsQualifier(String value, int length) {
+        for (int i = 0; i < length; ++i) {
+            if (isSpecial(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean needsQualifier(char[] chars, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (isSpecial(chars[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSpecial(char c) {
+        return c == separator || c == qualifier || c == '\n' || c == '\r';
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Chars.contentEquals;
+import static hrytsenko.csv.Chars.hash;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Dictionary of values of column, so the same values share the same string.
+ * 
+ * <p>
+ * Values are found without creating strings, so only the first occurrence of value is turned into string. Lookup does
+ * not require lock, so dictionary could be shared by several threads.
+ * 
+ * <p>
+ * The number of values is limited. When dictionary is full, new values are not added. If dictionary was created
+ * automatically, then it is released, because column does not contain a small set of values.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Dictionary {
+
+    private static final int MAX_SIZE = 4096;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final boolean auto;
+
+    private volatile String[] table = new String[INITIAL_CAPACITY];
+    private volatile boolean full;
+    private int size;
+
+    /**
+     * Creates dictionary.
+     * 
+     * @param auto
+     *            release dictionary when it is full.
+     */
+    Dictionary(boolean auto) {
+        this.auto = auto;
+    }
+
+    /**
+     * Creates dictionaries for fields of records.
+     * 
+     * @param fields
+     *            the names of fields.
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the dictionaries for fields, <code>null</code> for fields without dictionary.
+     */
+    static Dictionary[] forFields(String[] fields, Map<String, ?> args) {
+        Object dictionary = args.get("dictionary");
+        if (dictionary != null && !(dictionary instanceof Boolean) && !(dictionary instanceof Collection)) {
+            throw new IllegalArgumentException("Use flag or columns for dictionary.");
+        }
+
+        Dictionary[] dictionaries = new Dictionary[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            if (Boolean.TRUE.equals(dictionary)) {
+                dictionaries[i] = new Dictionary(true);
+            } else if (dictionary instanceof Collection && ((Collection<?>) dictionary).contains(fields[i])) {
+                dictionaries[i] = new Dictionary(false);
+            }
+        }
+        return dictionaries;
+    }
+
+    /**
+     * Returns the shared string for value.
+     * 
+     * @param value
+     *            the value.
+     * 
+     * @return the shared string or new one, if dictionary is full.
+     */
+    String intern(CharSequence value) {
+        String[] current = table;
+        if (current == null) {
+            return value.toString();
+        }
+
+        int hash = hash(value);
+        String found = find(current, hash, value);
+        if (found != null) {
+            return found;
+        }
+        if (full) {
+            return value.toString();
+        }
+        return add(hash, value);
+    }
+
+    /**
+     * Returns the number of values in dictionary.
+     * 
+     * @return the number of values.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized String add(int hash, CharSequence value) {
+        String[] current = table;
+        if (current == null) {
+            return value.toString();
+        }
+
+        String found = find(current, hash, value);
+        if (found != null) {
+            return found;
+        }
+
+        String string = value.toString();
+        if (size == MAX_SIZE) {
+            full = true;
+            if (auto) {
+                table = null;
+            }
+            return string;
+        }
+
+        if (2 * (size + 1) > current.length) {
+            String[] resized = new String[current.length * 2];
+            for (String added : current) {
+                if (added != null) {
+                    insert(resized, added);
+                }
+            }
+            insert(resized, string);
+            table = resized;
+        } else {
+            insert(current, string);
+        }
+        ++size;
+        return string;
+    }
+
+    private static String find(String[] table, int hash, CharSequence value) {
+        int mask = table.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            String candidate = table[i];
+            if (candidate == null) {
+                return null;
+            }
+            if (candidate.hashCode() == hash && contentEquals(candidate, value)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void insert(String[] table, String value) {
+        int mask = table.length - 1;
+        int i = value.hashCode() & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+    }
+
+}
@@ -0,0 +1,406 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts records, that may not fit into memory.
+ * 
+ * <p>
+ * Records are read into runs, that fit into the given memory. Runs are sorted by several threads and spilled into
+ * temporary files, where each record is encoded as the index of its header and the values in UTF-8. Then runs are
+ * merged into the ordered stream of records. If there are too many runs, they are merged in several passes.
+ * 
+ * <p>
+ * If all records fit into the first run, they are sorted in memory without temporary files. Sort is stable.
+ * 
+ * @author hrytsenko.anton
+ */
+final class ExternalSort {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("APP");
+
+    private static final long MIN_RUN_MEMORY = 1024 * 1024;
+    private static final int MAX_MERGED_RUNS = 128;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final long RECORD_OVERHEAD = 64;
+    private static final long VALUE_OVERHEAD = 48;
+
+    private final SortKey key;
+    private final long memory;
+    private final int threads;
+
+    /**
+     * Creates sort.
+     * 
+     * @param key
+     *            the order of records.
+     * @param memory
+     *            the memory for records in bytes.
+     * @param threads
+     *            the number of threads for sorting of runs.
+     */
+    ExternalSort(SortKey key, long memory, int threads) {
+        this.key = key;
+        this.memory = memory;
+        this.threads = threads;
+    }
+
+    /**
+     * Sorts records.
+     * 
+     * @param set
+     *            the records to be sorted.
+     * 
+     * @return the stream of sorted records.
+     * 
+     * @throws IOException
+     *             if runs could not be spilled.
+     */
+    RecordStream sort(Iterable<Record> set) throws IOException {
+        long runMemory = Math.max(memory / (threads + 1), MIN_RUN_MEMORY);
+
+        List<Run> runs = new ArrayList<>();
+        Deque<Future<Run>> pending = new ArrayDeque<>();
+        ExecutorService pool = Threads.newPool("sort", threads);
+        try {
+            List<SortKey.Entry> entries = new ArrayList<>();
+            long used = 0;
+            long count = 0;
+            for (Record record : set) {
+                entries.add(key.entry(record));
+                used += estimate(record);
+                ++count;
+
+                if (used >= runMemory) {
+                    pending.add(pool.submit(spillTask(entries)));
+                    while (pending.size() > threads) {
+                        runs.add(Threads.await(pending.poll()));
+                    }
+                    entries = new ArrayList<>();
+                    used = 0;
+                }
+            }
+
+            if (pending.isEmpty() && runs.isEmpty()) {
+                LOGGER.info("Sort: {} records in memory.", count);
+                Merge merge = new Merge(runs);
+                return new RecordStream(sorted(entries), merge);
+            }
+
+            if (!entries.isEmpty()) {
+                pending.add(pool.submit(spillTask(entries)));
+            }
+            while (!pending.isEmpty()) {
+                runs.add(Threads.await(pending.poll()));
+            }
+            LOGGER.info("Sort: {} records in {} runs.", count, runs.size());
+
+            while (runs.size() > MAX_MERGED_RUNS) {
+                runs = mergePass(runs);
+            }
+            Merge merge = new Merge(runs);
+            return new RecordStream(merge, merge);
+        } catch (IOException | RuntimeException | Error exception) {
+            for (Future<Run> run : pending) {
+                try {
+                    runs.add(Threads.await(run));
+                } catch (IOException | RuntimeException | Error failure) {
+                    LOGGER.info("Run not spilled: {}.", failure.getMessage());
+                }
+            }
+            deleteAll(runs);
+            throw exception;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Callable<Run> spillTask(final List<SortKey.Entry> entries) {
+        return new Callable<Run>() {
+
+            @Override
+            public Run call() throws IOException {
+                return spill(sorted(entries));
+            }
+
+        };
+    }
+
+    private Iterator<Record> sorted(List<SortKey.Entry> entries) {
+        Collections.sort(entries, key);
+
+        final Iterator<SortKey.Entry> iterator = entries.iterator();
+        return new Iterator<Record>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Record next() {
+                return iterator.next().record();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+
+    /**
+     * Merges groups of runs into larger runs.
+     */
+    private List<Run> mergePass(List<Run> runs) throws IOException {
+        List<Run> merged = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i += MAX_MERGED_RUNS) {
+                try (Merge merge = new Merge(runs.subList(i, Math.min(i + MAX_MERGED_RUNS, runs.size())))) {
+                    merged.add(spill(merge));
+                }
+            }
+        } catch (IOException | RuntimeException | Error exception) {
+            deleteAll(merged);
+            throw exception;
+        } finally {
+            deleteAll(runs);
+        }
+        return merged;
+    }
+
+    /**
+     * Writes sorted records into temporary file.
+     */
+    private static Run spill(Iterator<Record> records) throws IOException {
+        Run run = new Run(Files.createTempFile(null, ".sort"));
+        Map<Header, Integer> headerIds = new HashMap<>();
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run.path),
+                BUFFER_SIZE))) {
+            while (records.hasNext()) {
+                Record record = records.next();
+                Header header = record.header();
+                Integer id = headerIds.get(header);
+                if (id == null) {
+                    id = run.headers.size();
+                    run.headers.add(header);
+                    headerIds.put(header, id);
+                }
+
+                data.writeInt(id);
+                for (int i = 0; i < header.size(); ++i) {
+                    byte[] value = record.getAt(i).getBytes(UTF_8);
+                    data.writeInt(value.length);
+                    data.write(value);
+                }
+                ++run.size;
+            }
+        } catch (IOException | RuntimeException | Error exception) {
+            Files.deleteIfExists(run.path);
+            throw exception;
+        }
+        return run;
+    }
+
+    private static long estimate(Record record) {
+        long size = RECORD_OVERHEAD;
+        for (int i = 0; i < record.header().size(); ++i) {
+            size += VALUE_OVERHEAD + 2L * record.getAt(i).length();
+        }
+        return size;
+    }
+
+    private static void deleteAll(List<Run> runs) throws IOException {
+        for (Run run : runs) {
+            Files.deleteIfExists(run.path);
+        }
+    }
+
+    /**
+     * Sorted records in temporary file.
+     */
+    private static final class Run {
+
+        private final Path path;
+        private final List<Header> headers = new ArrayList<>();
+        private long size;
+
+        private Run(Path path) {
+            this.path = path;
+        }
+
+    }
+
+    /**
+     * Reads records of run in order.
+     */
+    private final class Cursor {
+
+        private final Run run;
+        private final int index;
+        private final DataInputStream data;
+        private long read;
+        private byte[] buffer = new byte[256];
+
+        private SortKey.Entry head;
+
+        private Cursor(Run run, int index, int bufferSize) throws IOException {
+            this.run = run;
+            this.index = index;
+            this.data = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), bufferSize));
+        }
+
+        private boolean next() throws IOException {
+            if (read == run.size) {
+                head = null;
+                return false;
+            }
+
+            Header header = run.headers.get(data.readInt());
+            String[] values = new String[header.size()];
+            for (int i = 0; i < values.length; ++i) {
+                int length = data.readInt();
+                if (length > buffer.length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                data.readFully(buffer, 0, length);
+                values[i] = new String(buffer, 0, length, UTF_8);
+            }
+            ++read;
+            head = key.entry(new Record(header, values));
+            return true;
+        }
+
+    }
+
+    /**
+     * Merges runs into the ordered sequence of records.
+     * 
+     * <p>
+     * Files of runs are deleted as soon as they are opened, and their data is read through open files. So files are
+     * not left behind, if iteration stops early and merge is never closed.
+     */
+    private final class Merge implements Iterator<Record>, Closeable {
+
+        private final List<Run> runs;
+        private final List<Cursor> cursors = new ArrayList<>();
+        private final PriorityQueue<Cursor> queue;
+
+        private Merge(List<Run> runs) throws IOException {
+            this.runs = runs;
+            this.queue = new PriorityQueue<>(Math.max(runs.size(), 1), new Comparator<Cursor>() {
+
+                @Override
+                public int compare(Cursor cursor, Cursor other) {
+                    int order = key.compare(cursor.head, other.head);
+                    return order != 0 ? order : Integer.compare(cursor.index, other.index);
+                }
+
+            });
+
+            int bufferSize = (int) Math.min(BUFFER_SIZE, Math.max(4096, memory / Math.max(runs.size(), 1)));
+            try {
+                for (Run run : runs) {
+                    Cursor cursor = new Cursor(run, cursors.size(), bufferSize);
+                    cursors.add(cursor);
+                    if (cursor.next()) {
+                        queue.add(cursor);
+                    }
+                }
+                deleteAll(runs);
+            } catch (IOException | RuntimeException | Error exception) {
+                close();
+                throw exception;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Record next() {
+            Cursor cursor = queue.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+
+            Record record = cursor.head.record();
+            try {
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            } catch (IOException exception) {
+                throw new IllegalStateException("Could not read run.", exception);
+            }
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            queue.clear();
+            try {
+                for (Cursor cursor : cursors) {
+                    cursor.data.close();
+                }
+            } finally {
+                deleteAll(runs);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.lang.String.format;
+
+import java.util.Map;
+
+/**
+ * Types of fields, whose values are kept in parsed form.
+ * 
+ * <p>
+ * Parsed value is encoded as <code>long</code>: integer as is, floating-point number as its bits and date as the
+ * number of days since 1970-01-01. Dates use format <code>yyyy-MM-dd</code>.
+ * 
+ * @author hrytsenko.anton
+ */
+enum FieldType {
+
+    LONG {
+
+        @Override
+        long parse(String value) {
+            return Long.parseLong(value);
+        }
+
+    },
+
+    DOUBLE {
+
+        @Override
+        long parse(String value) {
+            return Double.doubleToRawLongBits(Double.parseDouble(value));
+        }
+
+    },
+
+    DATE {
+
+        @Override
+        long parse(String value) {
+            if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+                throw new IllegalArgumentException(format("Invalid date %s.", value));
+            }
+
+            int year = parseDigits(value, 0, 4);
+            int month = parseDigits(value, 5, 7);
+            int day = parseDigits(value, 8, 10);
+            if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+                throw new IllegalArgumentException(format("Invalid date %s.", value));
+            }
+
+            return toEpochDay(year, month, day);
+        }
+
+    };
+
+    /**
+     * The number of milliseconds in day.
+     */
+    static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Parses value.
+     * 
+     * @param value
+     *            the value of field.
+     * 
+     * @return the parsed value.
+     * 
+     * @throws IllegalArgumentException
+     *             if value could not be parsed.
+     */
+    abstract long parse(String value);
+
+    /**
+     * Returns types for fields of records.
+     * 
+     * @param fields
+     *            the names of fields.
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the types of fields, <code>null</code> for fields without type, or <code>null</code> if there are no
+     *         typed fields.
+     * 
+     * @throws IllegalArgumentException
+     *             if type is given for column, that is not in fields.
+     */
+    static FieldType[] forFields(String[] fields, Map<String, ?> args) {
+        Object types = args.get("types");
+        if (types == null) {
+            return null;
+        }
+        if (!(types instanceof Map)) {
+            throw new IllegalArgumentException("Use map of columns and types for types.");
+        }
+
+        FieldType[] fieldTypes = new FieldType[fields.length];
+        for (Map.Entry<?, ?> type : ((Map<?, ?>) types).entrySet()) {
+            int i = indexOf(fields, type.getKey().toString());
+            if (i < 0) {
+                throw new IllegalArgumentException(format("Column %s not found.", type.getKey()));
+            }
+            fieldTypes[i] = of(type.getValue());
+        }
+        return fieldTypes;
+    }
+
+    /**
+     * Returns type by its name.
+     * 
+     * @param name
+     *            the name of type: <code>long</code>, <code>double</code> or <code>date</code>.
+     * 
+     * @return the type.
+     */
+    static FieldType of(Object name) {
+        for (FieldType type : values()) {
+            if (type.name().equalsIgnoreCase(String.valueOf(name))) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException(format("Type %s not supported.", name));
+    }
+
+    private static int indexOf(String[] fields, String field) {
+        for (int i = 0; i < fields.length; ++i) {
+            if (fields[i].equals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseDigits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; ++i) {
+            char digit = value.charAt(i);
+            if (digit < '0' || digit > '9') {
+                throw new IllegalArgumentException(format("Invalid date %s.", value));
+            }
+            result = result * 10 + digit - '0';
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * Converts date of proleptic Gregorian calendar into the number of days since 1970-01-01.
+     */
+    private static long toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+}
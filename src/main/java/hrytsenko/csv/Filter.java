@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Chars.contentEquals;
+import static hrytsenko.csv.Chars.hash;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import groovy.lang.Closure;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+
+/**
+ * Filter for rows of CSV file, that is defined by conditions for fields.
+ * 
+ * <p>
+ * Supported conditions:
+ * <dl>
+ * <dt>value</dt>
+ * <dd>Value of field is equal to string representation of given value.</dd>
+ * <dt>collection</dt>
+ * <dd>Value of field is equal to string representation of any given value.</dd>
+ * <dt>pattern</dt>
+ * <dd>Value of field matches given {@link Pattern}.</dd>
+ * <dt>closure</dt>
+ * <dd>Closure returns <code>true</code> for value of field.</dd>
+ * </dl>
+ * 
+ * <p>
+ * Row is accepted, if it contains all fields and all conditions are satisfied. Conditions are checked on values, that
+ * are not turned into strings yet, so rows could be filtered before records are created.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Filter {
+
+    private final String[] fields;
+    private final Condition[] conditions;
+
+    /**
+     * Creates filter.
+     * 
+     * @param where
+     *            the conditions for fields.
+     */
+    Filter(Map<String, ?> where) {
+        fields = new String[where.size()];
+        conditions = new Condition[where.size()];
+
+        int i = 0;
+        for (Map.Entry<String, ?> entry : where.entrySet()) {
+            fields[i] = entry.getKey();
+            conditions[i] = toCondition(entry.getValue());
+            ++i;
+        }
+    }
+
+    /**
+     * Returns the number of conditions.
+     * 
+     * @return the number of conditions.
+     */
+    int size() {
+        return fields.length;
+    }
+
+    /**
+     * Returns field, that is checked by condition.
+     * 
+     * @param i
+     *            the index of condition.
+     * 
+     * @return the name of field.
+     */
+    String field(int i) {
+        return fields[i];
+    }
+
+    /**
+     * Checks value of field.
+     * 
+     * @param i
+     *            the index of condition.
+     * @param value
+     *            the value of field.
+     * 
+     * @return <code>true</code> if condition is satisfied.
+     */
+    boolean accepts(int i, CharSequence value) {
+        return conditions[i].matches(value);
+    }
+
+    /**
+     * Checks record.
+     * 
+     * @param record
+     *            the record to be checked.
+     * 
+     * @return <code>true</code> if all conditions are satisfied.
+     */
+    boolean accepts(Record record) {
+        for (int i = 0; i < fields.length; ++i) {
+            String value = record.getAt(fields[i]);
+            if (value == null || !accepts(i, value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Condition toCondition(Object condition) {
+        if (condition instanceof Pattern) {
+            return new Matches((Pattern) condition);
+        }
+        if (condition instanceof Closure) {
+            return new Satisfies((Closure<?>) condition);
+        }
+        if (condition instanceof Collection) {
+            return new In((Collection<?>) condition);
+        }
+        return new Equals(asString(condition));
+    }
+
+    private static String asString(Object value) {
+        return value == null ? EMPTY : value.toString();
+    }
+
+    private interface Condition {
+
+        boolean matches(CharSequence value);
+
+    }
+
+    private static final class Equals implements Condition {
+
+        private final String expected;
+
+        Equals(String expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public boolean matches(CharSequence value) {
+            return contentEquals(expected, value);
+        }
+
+    }
+
+    /**
+     * Values are sorted by hash, so they are found by binary search without creating string.
+     */
+    private static final class In implements Condition {
+
+        private final int[] hashes;
+        private final String[] expected;
+
+        In(Collection<?> values) {
+            expected = new String[values.size()];
+            int i = 0;
+            for (Object value : values) {
+                expected[i++] = asString(value);
+            }
+            Arrays.sort(expected, new Comparator<String>() {
+
+                @Override
+                public int compare(String first, String second) {
+                    return Integer.compare(first.hashCode(), second.hashCode());
+                }
+
+            });
+
+            hashes = new int[expected.length];
+            for (i = 0; i < expected.length; ++i) {
+                hashes[i] = expected[i].hashCode();
+            }
+        }
+
+        @Override
+        public boolean matches(CharSequence value) {
+            int hash = hash(value);
+            int i = Arrays.binarySearch(hashes, hash);
+            if (i < 0) {
+                return false;
+            }
+
+            while (i > 0 && hashes[i - 1] == hash) {
+                --i;
+            }
+            for (; i < hashes.length && hashes[i] == hash; ++i) {
+                if (contentEquals(expected[i], value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    private static final class Matches implements Condition {
+
+        private final Pattern pattern;
+
+        Matches(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(CharSequence value) {
+            return pattern.matcher(value).matches();
+        }
+
+    }
+
+    private static final class Satisfies implements Condition {
+
+        private final Closure<?> closure;
+
+        Satisfies(Closure<?> closure) {
+            this.closure = closure;
+        }
+
+        @Override
+        public boolean matches(CharSequence value) {
+            return DefaultTypeTransformation.castToBoolean(closure.call(value.toString()));
+        }
+
+    }
+
+}
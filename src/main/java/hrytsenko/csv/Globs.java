@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Utility methods for search of files by glob patterns.
+ * 
+ * <p>
+ * Pattern uses syntax of {@link FileSystems#getPathMatcher(String)} and slashes as separators. Search starts from the
+ * longest leading directory without wildcards, so only that part of file system is visited.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Globs {
+
+    private static final String WILDCARDS = "*?[{";
+
+    private Globs() {
+    }
+
+    /**
+     * Checks that path contains wildcards.
+     * 
+     * @param pattern
+     *            the path or pattern.
+     * 
+     * @return <code>true</code> if path is pattern.
+     */
+    static boolean isGlob(String pattern) {
+        return StringUtils.containsAny(pattern, WILDCARDS);
+    }
+
+    /**
+     * Finds files that match pattern.
+     * 
+     * @param pattern
+     *            the pattern for paths.
+     * 
+     * @return the paths to files, in lexicographic order.
+     * 
+     * @throws IOException
+     *             if directories could not be visited.
+     */
+    static List<Path> find(String pattern) throws IOException {
+        if (!isGlob(pattern)) {
+            return Collections.singletonList(Paths.get(pattern));
+        }
+
+        String[] parts = pattern.split("/", -1);
+        int fixed = 0;
+        while (!isGlob(parts[fixed])) {
+            ++fixed;
+        }
+
+        String base = StringUtils.join(parts, '/', 0, fixed);
+        final Path start = fixed == 0 ? Paths.get("") : Paths.get(base.isEmpty() ? "/" : base);
+        if (!Files.isDirectory(start)) {
+            return Collections.emptyList();
+        }
+
+        String rest = StringUtils.join(parts, '/', fixed, parts.length);
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + rest);
+        int depth = rest.contains("**") ? Integer.MAX_VALUE : parts.length - fixed;
+
+        final List<Path> paths = new ArrayList<>();
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), depth, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && matcher.matches(start.relativize(file))) {
+                    paths.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+
+        Collections.sort(paths);
+        return paths;
+    }
+
+}
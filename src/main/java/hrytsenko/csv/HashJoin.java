@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Joins two sets of records by key using hash table.
+ * 
+ * <p>
+ * Hash table is built for the smaller set, if sizes of both sets are known, and the other set is read once. If only
+ * one set is collection, then table is built for it, so the other set could be stream. Otherwise, table is built for
+ * the right set.
+ * 
+ * <p>
+ * Results follow the order of the read set, and each record is joined with all matched records in their order.
+ * Records without match from the set of table follow them. Semi and anti joins keep the order of the left set.
+ * 
+ * @author hrytsenko.anton
+ */
+final class HashJoin {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("APP");
+
+    private final String field;
+    private final JoinType type;
+
+    private long leftMatched;
+    private long leftUnmatched;
+    private long rightMatched;
+    private long rightUnmatched;
+
+    /**
+     * Creates join.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param type
+     *            the type of join.
+     */
+    HashJoin(String field, JoinType type) {
+        this.field = field;
+        this.type = type;
+    }
+
+    /**
+     * Joins sets of records.
+     * 
+     * @param leftSet
+     *            the left set.
+     * @param rightSet
+     *            the right set.
+     * 
+     * @return the joined records.
+     */
+    List<Record> join(Iterable<Record> leftSet, Iterable<Record> rightSet) {
+        List<Record> result = new ArrayList<>();
+        if (isTableForLeft(leftSet, rightSet)) {
+            joinByLeft(leftSet, rightSet, result);
+        } else {
+            joinByRight(leftSet, rightSet, result);
+        }
+
+        LOGGER.info("Join: {} and {} matched, {} and {} not matched, {} results.", leftMatched, rightMatched,
+                leftUnmatched, rightUnmatched, result.size());
+        return result;
+    }
+
+    private void joinByRight(Iterable<Record> leftSet, Iterable<Record> rightSet, List<Record> result) {
+        Map<String, List<Record>> table = Records.group(field, rightSet);
+        Set<String> matchedKeys = new HashSet<>();
+
+        for (Record left : leftSet) {
+            List<Record> matches = table.get(key(left));
+            if (matches == null) {
+                ++leftUnmatched;
+                if (type.keepsLeft()) {
+                    result.add(type.joins() ? left.copy() : left);
+                }
+                continue;
+            }
+
+            ++leftMatched;
+            matchedKeys.add(key(left));
+            if (type == JoinType.SEMI) {
+                result.add(left);
+            } else if (type.joins()) {
+                for (Record right : matches) {
+                    result.add(left.merge(right));
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Record>> entry : table.entrySet()) {
+            if (matchedKeys.contains(entry.getKey())) {
+                rightMatched += entry.getValue().size();
+                continue;
+            }
+
+            rightUnmatched += entry.getValue().size();
+            if (type.keepsRight()) {
+                for (Record right : entry.getValue()) {
+                    result.add(right.copy());
+                }
+            }
+        }
+    }
+
+    private void joinByLeft(Iterable<Record> leftSet, Iterable<Record> rightSet, List<Record> result) {
+        Map<String, List<Record>> table = Records.group(field, leftSet);
+        Set<String> matchedKeys = new HashSet<>();
+
+        for (Record right : rightSet) {
+            List<Record> matches = table.get(key(right));
+            if (matches == null) {
+                ++rightUnmatched;
+                if (type.keepsRight()) {
+                    result.add(right.copy());
+                }
+                continue;
+            }
+
+            ++rightMatched;
+            matchedKeys.add(key(right));
+            if (type.joins()) {
+                for (Record left : matches) {
+                    result.add(left.merge(right));
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Record>> entry : table.entrySet()) {
+            if (matchedKeys.contains(entry.getKey())) {
+                leftMatched += entry.getValue().size();
+            } else {
+                leftUnmatched += entry.getValue().size();
+            }
+        }
+
+        if (type.joins() && !type.keepsLeft()) {
+            return;
+        }
+        for (Record left : leftSet) {
+            boolean matched = matchedKeys.contains(key(left));
+            if (type == JoinType.SEMI && matched) {
+                result.add(left);
+            } else if (type.keepsLeft() && !matched) {
+                result.add(type.joins() ? left.copy() : left);
+            }
+        }
+    }
+
+    private boolean isTableForLeft(Iterable<Record> leftSet, Iterable<Record> rightSet) {
+        if (leftSet instanceof Collection && rightSet instanceof Collection) {
+            return ((Collection<?>) leftSet).size() < ((Collection<?>) rightSet).size();
+        }
+        return leftSet instanceof Collection;
+    }
+
+    private String key(Record record) {
+        String key = record.getAt(field);
+        if (key == null) {
+            throw new IllegalArgumentException("One or more record has no key.");
+        }
+        return key;
+    }
+
+}
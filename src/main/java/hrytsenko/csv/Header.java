@@ -0,0 +1,356 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.util.Arrays.asList;
+import static java.util.Arrays.copyOf;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Ordered set of fields, that defines layout of values in records.
+ * 
+ * <p>
+ * Header is immutable and shared by records of the same shape, and each record keeps only array of values. Positions
+ * of fields are found by hash index, that is built once for header.
+ * 
+ * <p>
+ * When record changes its set of fields, it switches to the derived header. Derived headers are cached by their
+ * parent, so records that are changed in the same way share the same header too. The cache keeps only weak references,
+ * so derived headers, that are no longer used by records, do not stay in memory.
+ * 
+ * <p>
+ * Header also defines types of fields, whose values are kept by records in parsed form, see {@link FieldType}. Parsed
+ * values are kept only for typed fields, and header maps position of typed field to its slot for parsed value.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Header {
+
+    /**
+     * The header without fields, that is the root for records created by scripts.
+     */
+    static final Header EMPTY = new Header();
+
+    private static final ReferenceQueue<Header> COLLECTED = new ReferenceQueue<>();
+
+    private final String[] fields;
+    private final FieldType[] types;
+    private final int[] slots;
+    private final int slotCount;
+    private final Map<String, Integer> index;
+
+    private final ConcurrentMap<Object, DerivedReference> derived = new ConcurrentHashMap<>();
+
+    /**
+     * Creates header with given fields.
+     * 
+     * @param fields
+     *            the distinct names of fields.
+     */
+    Header(String... fields) {
+        this(fields, null);
+    }
+
+    /**
+     * Creates header with given fields and their types.
+     * 
+     * @param fields
+     *            the distinct names of fields.
+     * @param types
+     *            the types of fields, <code>null</code> for fields without type, or <code>null</code> if there are no
+     *            typed fields.
+     */
+    Header(String[] fields, FieldType[] types) {
+        this(fields.clone(), types != null ? types.clone() : null, slotsFor(types), countSlots(types));
+    }
+
+    /**
+     * Creates header, that keeps slots for parsed values of the original header.
+     */
+    private Header(String[] fields, FieldType[] types, int[] slots, int slotCount) {
+        this.fields = fields;
+        this.types = types;
+        this.slots = slots;
+        this.slotCount = slotCount;
+
+        index = new HashMap<>(fields.length * 2);
+        for (int i = 0; i < fields.length; ++i) {
+            index.put(fields[i], i);
+        }
+    }
+
+    /**
+     * Returns the number of fields.
+     * 
+     * @return the number of fields.
+     */
+    int size() {
+        return fields.length;
+    }
+
+    /**
+     * Returns name of field.
+     * 
+     * @param i
+     *            the position of field.
+     * 
+     * @return the name of field.
+     */
+    String field(int i) {
+        return fields[i];
+    }
+
+    /**
+     * Returns type of field.
+     * 
+     * @param i
+     *            the position of field.
+     * 
+     * @return the type of field or <code>null</code> if field has no type.
+     */
+    FieldType type(int i) {
+        return types != null ? types[i] : null;
+    }
+
+    /**
+     * Returns slot for parsed value of field.
+     * 
+     * @param i
+     *            the position of field.
+     * 
+     * @return the slot or <code>-1</code> if field has no type.
+     */
+    int slot(int i) {
+        return slots != null ? slots[i] : -1;
+    }
+
+    /**
+     * Returns the number of slots for parsed values.
+     * 
+     * @return the number of slots.
+     */
+    int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Checks that header has typed fields.
+     * 
+     * @return <code>true</code> if some fields have types.
+     */
+    boolean isTyped() {
+        return types != null;
+    }
+
+    /**
+     * Finds position of field.
+     * 
+     * @param field
+     *            the name of field.
+     * 
+     * @return the position of field or <code>-1</code> if it not found.
+     */
+    int indexOf(String field) {
+        Integer i = index.get(field);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * Returns the names of all fields.
+     * 
+     * @return the names of fields.
+     */
+    Collection<String> fields() {
+        return new ArrayList<>(asList(fields));
+    }
+
+    /**
+     * Returns header with field added to the end.
+     * 
+     * @param field
+     *            the name of new field.
+     * 
+     * @return the derived header.
+     */
+    Header add(String field) {
+        Header header = derived(field);
+        if (header == null) {
+            String[] addedFields = copyOf(fields, fields.length + 1);
+            addedFields[fields.length] = field;
+            FieldType[] addedTypes = types != null ? copyOf(types, types.length + 1) : null;
+            int[] addedSlots = slots != null ? copyOf(slots, slots.length + 1) : null;
+            if (addedSlots != null) {
+                addedSlots[fields.length] = -1;
+            }
+            header = cache(field, new Header(addedFields, addedTypes, addedSlots, slotCount));
+        }
+        return header;
+    }
+
+    /**
+     * Returns header with renamed field.
+     * 
+     * @param i
+     *            the position of field.
+     * @param field
+     *            the new name of field, that is not in header.
+     * 
+     * @return the derived header.
+     */
+    Header rename(int i, String field) {
+        Object key = asList(i, field);
+        Header header = derived(key);
+        if (header == null) {
+            String[] renamedFields = fields.clone();
+            renamedFields[i] = field;
+            header = cache(key, new Header(renamedFields, types, slots, slotCount));
+        }
+        return header;
+    }
+
+    /**
+     * Returns header, that contains only fields at given positions.
+     * 
+     * @param retained
+     *            the positions of retained fields.
+     * 
+     * @return the derived header.
+     */
+    Header retain(BitSet retained) {
+        Header header = derived(retained);
+        if (header == null) {
+            String[] retainedFields = new String[retained.cardinality()];
+            FieldType[] retainedTypes = types != null ? new FieldType[retainedFields.length] : null;
+            for (int i = retained.nextSetBit(0), j = 0; i >= 0; i = retained.nextSetBit(i + 1), ++j) {
+                retainedFields[j] = fields[i];
+                if (types != null) {
+                    retainedTypes[j] = types[i];
+                }
+            }
+            header = cache(retained.clone(), new Header(retainedFields, retainedTypes));
+        }
+        return header;
+    }
+
+    /**
+     * Returns header, where field has no type.
+     * 
+     * @param i
+     *            the position of field.
+     * 
+     * @return the derived header.
+     */
+    Header untype(int i) {
+        Object key = i;
+        Header header = derived(key);
+        if (header == null) {
+            FieldType[] untypedTypes = types.clone();
+            untypedTypes[i] = null;
+            int[] untypedSlots = slots.clone();
+            untypedSlots[i] = -1;
+            header = cache(key, new Header(fields, untypedTypes, untypedSlots, slotCount));
+        }
+        return header;
+    }
+
+    private Header derived(Object key) {
+        DerivedReference reference = derived.get(key);
+        return reference != null ? reference.get() : null;
+    }
+
+    private Header cache(Object key, Header header) {
+        expungeCollected();
+
+        DerivedReference reference = new DerivedReference(derived, key, header);
+        while (true) {
+            DerivedReference cached = derived.putIfAbsent(key, reference);
+            if (cached == null) {
+                return header;
+            }
+            Header cachedHeader = cached.get();
+            if (cachedHeader != null) {
+                return cachedHeader;
+            }
+            if (derived.replace(key, cached, reference)) {
+                return header;
+            }
+        }
+    }
+
+    private static void expungeCollected() {
+        Reference<? extends Header> reference;
+        while ((reference = COLLECTED.poll()) != null) {
+            DerivedReference collected = (DerivedReference) reference;
+            collected.cache.remove(collected.key, collected);
+        }
+    }
+
+    private static int[] slotsFor(FieldType[] types) {
+        if (types == null) {
+            return null;
+        }
+
+        int[] slots = new int[types.length];
+        int count = 0;
+        for (int i = 0; i < types.length; ++i) {
+            slots[i] = types[i] != null ? count++ : -1;
+        }
+        return slots;
+    }
+
+    private static int countSlots(FieldType[] types) {
+        int count = 0;
+        if (types != null) {
+            for (FieldType type : types) {
+                if (type != null) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Weak reference to derived header, that is removed from cache of parent after header is collected.
+     */
+    private static final class DerivedReference extends WeakReference<Header> {
+
+        private final ConcurrentMap<Object, DerivedReference> cache;
+        private final Object key;
+
+        DerivedReference(ConcurrentMap<Object, DerivedReference> cache, Object key, Header header) {
+            super(header, COLLECTED);
+            this.cache = cache;
+            this.key = key;
+        }
+
+    }
+
+}
@@ -20,35 +20,38 @@
 package hrytsenko.csv;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.Files.newBufferedWriter;
-import static java.nio.file.Files.newInputStream;
 import groovy.lang.Closure;
+import groovy.transform.stc.ClosureParams;
+import groovy.transform.stc.SimpleType;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.input.BOMInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.ObjectReader;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 
 /**
  * Methods for input/output.
@@ -57,9 +60,40 @@ import com.fasterxml.jackson.dataformat.csv.CsvSchema;
  * Supported named arguments:
  * <dl>
  * <dt>path</dt>
- * <dd>Path to file.</dd>
+ * <dd>Path to file. Files with extension <code>.gz</code>, <code>.deflate</code> or <code>.zz</code> are compressed,
+ * also GZIP is detected by content on load.</dd>
+ * <dt>paths</dt>
+ * <dd>Paths to several files for load, either glob pattern (see {@link Globs}) or collection of paths and patterns.
+ * Files are loaded concurrently.</dd>
  * <dt>records</dt>
- * <dd>The list of records to be saved.</dd>
+ * <dd>The records to be saved, either iterable or iterator.</dd>
+ * <dt>columns</dt>
+ * <dd>The columns to be loaded, default: all columns of file. The columns for header of saved file, default: all
+ * fields of saved records.</dd>
+ * <dt>where</dt>
+ * <dd>The conditions for values of fields, that loaded records should satisfy, see {@link Filter}.</dd>
+ * <dt>dictionary</dt>
+ * <dd>The columns, whose values are shared by loaded records, or <code>true</code> to detect such columns, see
+ * {@link Dictionary}.</dd>
+ * <dt>types</dt>
+ * <dd>The types of columns: <code>long</code>, <code>double</code> or <code>date</code>. Values of typed columns are
+ * also kept in parsed form, see {@link Record#getLong(String)}. Types could be given only for loaded columns.</dd>
+ * <dt>lazy</dt>
+ * <dd>Create strings for values of loaded records only when they are accessed, default: <code>false</code>. Values,
+ * that were not accessed, are saved as they were loaded.</dd>
+ * <dt>table</dt>
+ * <dd>Keep loaded records outside of heap, see {@link RecordTable}, default: <code>false</code>. Records are added to
+ * table as they are read, so several files of <code>paths</code> are loaded one by one.</dd>
+ * <dt>parallel</dt>
+ * <dd>Parse file using several threads, default: <code>false</code>.</dd>
+ * <dt>threads</dt>
+ * <dd>The number of threads for parallel parsing, compression and load of several files, default: the number of
+ * available processors.</dd>
+ * <dt>async</dt>
+ * <dd>Write saved file in background thread, default: <code>false</code>.</dd>
+ * <dt>snapshot</dt>
+ * <dd>Keep binary snapshot next to file and load records from it, while file is not changed, default:
+ * <code>false</code>. Could not be combined with <code>table</code> and <code>lazy</code>.</dd>
  * <dt>charset</dt>
  * <dd>Charset for file, see standard charsets in {@link Charset}, default: UTF-8.</dd>
  * <dt>separator</dt>
@@ -108,31 +142,320 @@ public final class IO {
      * @throws IOException
      *             if file could not be read.
      */
-    public static List<Record> load(Map<String, ?> args, Closure<?> closure) throws IOException {
-        Path path = getPath(args);
-        LOGGER.info("Load: {}.", path.getFileName());
-
-        try (InputStream dataStream = newInputStream(path, StandardOpenOption.READ);
-                InputStream bomStream = new BOMInputStream(dataStream);
-                Reader dataReader = new InputStreamReader(bomStream, getCharset(args))) {
-            CsvSchema csvSchema = getSchema(args).setUseHeader(true).build();
-            CsvMapper csvMapper = new CsvMapper();
-            ObjectReader csvReader = csvMapper.reader(Map.class).with(csvSchema);
+    public static List<Record> load(Map<String, ?> args,
+            @ClosureParams(value = SimpleType.class, options = "hrytsenko.csv.Record") Closure<?> closure)
+            throws IOException {
+        if (args.containsKey("paths")) {
+            if (isTable(args)) {
+                return loadTable(args, closure);
+            }
 
-            Iterator<Map<String, String>> rows = csvReader.readValues(dataReader);
             List<Record> records = new ArrayList<>();
-            while (rows.hasNext()) {
-                Map<String, String> row = rows.next();
-                Record record = new Record();
-                record.putAll(row);
+            for (List<Record> fileRecords : loadAll(args, closure).values()) {
+                records.addAll(fileRecords);
+            }
+            return records;
+        }
+        if (isSnapshot(args)) {
+            return loadSnapshot(args, closure);
+        }
+
+        try (RecordStream stream = stream(args, closure)) {
+            List<Record> records = newRecords(args);
+            for (Record record : stream) {
                 records.add(record);
+            }
+            return records;
+        }
+    }
 
+    /**
+     * Gets records from several files.
+     * 
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the loaded records for each file.
+     * 
+     * @throws IOException
+     *             if any file could not be read.
+     */
+    public static Map<String, List<Record>> loadAll(Map<String, ?> args) throws IOException {
+        return loadAll(args, null);
+    }
+
+    /**
+     * Gets records from several files.
+     * 
+     * <p>
+     * Files are loaded concurrently, but results are ordered as paths, and files found by pattern are ordered by their
+     * paths.
+     * 
+     * <p>
+     * If closure is given, then it will be applied to each record in the calling thread. If closure has two parameters,
+     * then path to file is passed as the second one.
+     * 
+     * @param args
+     *            the named arguments {@link IO}.
+     * @param closure
+     *            the closure to be applied to each record.
+     * 
+     * @return the loaded records for each file.
+     * 
+     * @throws IOException
+     *             if any file could not be read.
+     */
+    public static Map<String, List<Record>> loadAll(Map<String, ?> args, @ClosureParams(value = SimpleType.class,
+            options = { "hrytsenko.csv.Record", "hrytsenko.csv.Record,java.lang.String" }) Closure<?> closure)
+            throws IOException {
+        List<Path> paths = getPaths(args);
+        if (paths.isEmpty()) {
+            LOGGER.info("No files to load.");
+            return new LinkedHashMap<>();
+        }
+
+        List<Future<List<Record>>> results = new ArrayList<>();
+        ExecutorService pool = Threads.newPool("loader", Math.min(getThreads(args), paths.size()));
+        try {
+            for (Path path : paths) {
+                final Map<String, ?> fileArgs = fileArgs(args, path);
+
+                results.add(pool.submit(new Callable<List<Record>>() {
+
+                    @Override
+                    public List<Record> call() throws IOException {
+                        return load(fileArgs);
+                    }
+
+                }));
+            }
+
+            Map<String, List<Record>> records = new LinkedHashMap<>();
+            for (int i = 0; i < paths.size(); ++i) {
+                String path = paths.get(i).toString();
+                List<Record> fileRecords = Threads.await(results.get(i));
                 if (closure != null) {
-                    closure.call(record);
+                    for (ListIterator<Record> iterator = fileRecords.listIterator(); iterator.hasNext();) {
+                        Record record = iterator.next();
+                        if (fileRecords instanceof RecordTable) {
+                            record = record.copy();
+                        }
+                        if (closure.getMaximumNumberOfParameters() == 2) {
+                            closure.call(record, path);
+                        } else {
+                            closure.call(record);
+                        }
+                        if (fileRecords instanceof RecordTable) {
+                            iterator.set(record);
+                        }
+                    }
                 }
+                records.put(path, fileRecords);
+            }
+            return records;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Streams records of files one by one into the same table, so records of all files are never kept in heap.
+     */
+    private static List<Record> loadTable(Map<String, ?> args, Closure<?> closure) throws IOException {
+        RecordTable records = new RecordTable();
+        try {
+            for (Path path : getPaths(args)) {
+                try (RecordStream stream = stream(fileArgs(args, path))) {
+                    for (Record record : stream) {
+                        if (closure != null && closure.getMaximumNumberOfParameters() == 2) {
+                            closure.call(record, path.toString());
+                        } else if (closure != null) {
+                            closure.call(record);
+                        }
+                        records.add(record);
+                    }
+                }
+            }
+            return records;
+        } catch (IOException | RuntimeException exception) {
+            records.close();
+            throw exception;
+        }
+    }
+
+    private static Map<String, ?> fileArgs(Map<String, ?> args, Path path) {
+        Map<String, Object> fileArgs = new HashMap<>(args);
+        fileArgs.remove("paths");
+        fileArgs.put("path", path.toString());
+        return fileArgs;
+    }
+
+    private static List<Record> newRecords(Map<String, ?> args) throws IOException {
+        return isTable(args) ? new RecordTable() : new ArrayList<Record>();
+    }
+
+    private static List<Record> loadSnapshot(Map<String, ?> args, Closure<?> closure) throws IOException {
+        if (isTable(args) || isLazy(args)) {
+            throw new IllegalArgumentException("Use snapshot without table and lazy.");
+        }
+
+        Path path = getPath(args);
+        Collection<String> columns = getColumns(args);
+        Map<String, ?> where = getWhere(args);
+
+        Map<String, Object> snapshotArgs = new HashMap<>(args);
+        snapshotArgs.remove("snapshot");
+        snapshotArgs.remove("where");
+        Set<String> filterColumns = new LinkedHashSet<>();
+        if (columns != null && where != null) {
+            filterColumns.addAll(where.keySet());
+            filterColumns.removeAll(columns);
+
+            List<String> snapshotColumns = new ArrayList<>(columns);
+            snapshotColumns.addAll(filterColumns);
+            snapshotArgs.put("columns", snapshotColumns);
+        }
+
+        Filter filter = where != null ? new Filter(where) : null;
+        String[] removed = filterColumns.toArray(new String[filterColumns.size()]);
+        List<Record> records = new ArrayList<>();
+
+        Iterator<Record> snapshot = null;
+        try {
+            snapshot = Snapshot.read(path, snapshotArgs);
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.info("Snapshot not used: {}.", exception.getMessage());
+        }
+        if (snapshot != null) {
+            LOGGER.info("Load: {} (snapshot).", path.getFileName());
+            while (snapshot.hasNext()) {
+                addLoaded(snapshot.next(), filter, removed, closure, records);
+            }
+            return records;
+        }
+
+        boolean changed = closure != null || removed.length > 0;
+        List<Record> allRecords = new ArrayList<>();
+        try (RecordStream stream = stream(snapshotArgs)) {
+            for (Record record : stream) {
+                allRecords.add(record);
+                addLoaded(changed ? record.copy() : record, filter, removed, closure, records);
+            }
+        }
+
+        try {
+            Snapshot.write(path, snapshotArgs, allRecords);
+        } catch (IOException exception) {
+            LOGGER.info("Snapshot not saved: {}.", exception.getMessage());
+        }
+        return records;
+    }
+
+    private static void addLoaded(Record record, Filter filter, String[] removed, Closure<?> closure,
+            List<Record> records) {
+        if (filter != null && !filter.accepts(record)) {
+            return;
+        }
+        if (removed.length > 0) {
+            record.remove(removed);
+        }
+        if (closure != null) {
+            closure.call(record);
+        }
+        records.add(record);
+    }
+
+    /**
+     * Gets stream of records from file.
+     * 
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the stream of records.
+     * 
+     * @throws IOException
+     *             if file could not be opened.
+     */
+    public static RecordStream stream(Map<String, ?> args) throws IOException {
+        return stream(args, null);
+    }
+
+    /**
+     * Gets stream of records from file.
+     * 
+     * <p>
+     * Records are read on demand, so only the current record is kept in memory. The file remains open until all
+     * records have been read or stream has been closed.
+     * 
+     * <p>
+     * If closure is given, then it will be applied to each record.
+     * 
+     * @param args
+     *            the named arguments {@link IO}.
+     * @param closure
+     *            the closure to be applied to each record.
+     * 
+     * @return the stream of records.
+     * 
+     * @throws IOException
+     *             if file could not be opened.
+     */
+    public static RecordStream stream(Map<String, ?> args,
+            @ClosureParams(value = SimpleType.class, options = "hrytsenko.csv.Record") Closure<?> closure)
+            throws IOException {
+        Path path = getPath(args);
+        LOGGER.info("Load: {}.", path.getFileName());
+
+        if (isParallel(args)) {
+            if (!ParallelReader.isSupported(args)) {
+                LOGGER.info("Parallel load not supported for charset {}.", getCharset(args));
+            } else if (Compression.isCompressed(path)) {
+                LOGGER.info("Parallel load not supported for compressed files.");
+            } else {
+                ParallelReader reader = ParallelReader.open(path, args);
+                return new RecordStream(apply(reader, closure), reader);
             }
+        }
+
+        InputStream dataStream = Compression.newDecompressingStream(path);
+        try {
+            InputStream bomStream = new BOMInputStream(dataStream);
+            Reader dataReader = new InputStreamReader(bomStream, getCharset(args));
+
+            RecordReader records = RecordReader.open(new Tokenizer(dataReader, getSeparator(args), getQualifier(args)),
+                    args);
+            return new RecordStream(apply(records, closure), records);
+        } catch (IOException | RuntimeException exception) {
+            dataStream.close();
+            throw exception;
+        }
+    }
+
+    private static Iterator<Record> apply(final Iterator<Record> records, final Closure<?> closure) {
+        if (closure == null) {
             return records;
         }
+
+        return new Iterator<Record>() {
+
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
+
+            @Override
+            public Record next() {
+                Record record = records.next();
+                closure.call(record);
+                return record;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
     }
 
     /**
@@ -141,6 +464,10 @@ public final class IO {
      * <p>
      * If file already exists, then it will be overridden.
      * 
+     * <p>
+     * If records are given as collection and columns are not defined, then header contains all fields of all records.
+     * Otherwise, records are written as they arrive, see {@link RecordWriter}.
+     * 
      * @param args
      *            the named arguments {@link IO}.
      * 
@@ -148,34 +475,107 @@ public final class IO {
      *             if file could not be written.
      */
     public static void save(Map<String, ?> args) throws IOException {
+        Object records = args.get("records");
+        if (records instanceof Collection && !args.containsKey("columns")) {
+            save(args, (Collection<?>) records);
+            return;
+        }
+
+        try (RecordWriter writer = writer(args)) {
+            writer.writeAll(getRecords(records));
+        }
+    }
+
+    /**
+     * Saves records into CSV file.
+     * 
+     * <p>
+     * The closure produces records using given {@link RecordWriter}, so records are written as they arrive.
+     * 
+     * @param args
+     *            the named arguments {@link IO}.
+     * @param closure
+     *            the closure that writes records.
+     * 
+     * @throws IOException
+     *             if file could not be written.
+     */
+    public static void save(Map<String, ?> args,
+            @ClosureParams(value = SimpleType.class, options = "hrytsenko.csv.RecordWriter") Closure<?> closure)
+            throws IOException {
+        try (RecordWriter writer = writer(args)) {
+            closure.call(writer);
+        }
+    }
+
+    /**
+     * Opens CSV file for writing records.
+     * 
+     * <p>
+     * If file already exists, then it will be overridden.
+     * 
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the writer for records.
+     * 
+     * @throws IOException
+     *             if file could not be opened.
+     */
+    public static RecordWriter writer(Map<String, ?> args) throws IOException {
         Path path = getPath(args);
         LOGGER.info("Save: {}.", path.getFileName());
 
-        @SuppressWarnings("unchecked")
-        Collection<Record> records = (Collection<Record>) args.get("records");
+        OutputStream dataStream = Compression.newCompressingStream(path, getThreads(args), isAsync(args));
+        try {
+            Writer dataWriter = new OutputStreamWriter(dataStream, getCharset(args).newEncoder());
+            return new RecordWriter(dataWriter, getSeparator(args), getQualifier(args), getColumns(args));
+        } catch (IOException | RuntimeException exception) {
+            dataStream.close();
+            throw exception;
+        }
+    }
+
+    private static void save(Map<String, ?> args, Collection<?> records) throws IOException {
         if (records.isEmpty()) {
+            LOGGER.info("Save: {}.", getPath(args).getFileName());
             LOGGER.info("No records to save.");
             return;
         }
 
-        try (Writer dataWriter = newBufferedWriter(path, getCharset(args), StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            Set<String> columns = new LinkedHashSet<>();
-            List<Map<String, String>> rows = new ArrayList<>();
-            for (Record record : records) {
-                Map<String, String> values = record.values();
-                columns.addAll(values.keySet());
-                rows.add(values);
+        Set<String> columns = new LinkedHashSet<>();
+        Header header = null;
+        for (Record record : getRecords(records)) {
+            if (record.header() != header) {
+                header = record.header();
+                columns.addAll(header.fields());
             }
+        }
 
-            CsvSchema.Builder csvSchema = getSchema(args).setUseHeader(true);
-            for (String column : columns) {
-                csvSchema.addColumn(column);
-            }
-            CsvMapper csvMapper = new CsvMapper();
-            ObjectWriter csvWriter = csvMapper.writer().withSchema(csvSchema.build());
-            csvWriter.writeValue(dataWriter, rows);
+        Map<String, Object> writerArgs = new HashMap<>(args);
+        writerArgs.put("columns", columns);
+        try (RecordWriter writer = writer(writerArgs)) {
+            writer.writeAll(getRecords(records));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Iterable<Record> getRecords(Object records) {
+        if (records instanceof Iterable) {
+            return (Iterable<Record>) records;
+        }
+        if (records instanceof Iterator) {
+            final Iterator<Record> iterator = (Iterator<Record>) records;
+            return new Iterable<Record>() {
+
+                @Override
+                public Iterator<Record> iterator() {
+                    return iterator;
+                }
+
+            };
         }
+        throw new IllegalArgumentException("Records not defined.");
     }
 
     static Path getPath(Map<String, ?> args) {
@@ -187,33 +587,96 @@ public final class IO {
         return Paths.get(path.toString());
     }
 
+    static List<Path> getPaths(Map<String, ?> args) throws IOException {
+        Object paths = args.get("paths");
+        if (paths instanceof CharSequence) {
+            return Globs.find(paths.toString());
+        }
+        if (paths instanceof Collection) {
+            List<Path> foundPaths = new ArrayList<>();
+            for (Object path : (Collection<?>) paths) {
+                foundPaths.addAll(Globs.find(path.toString()));
+            }
+            return foundPaths;
+        }
+        throw new IllegalArgumentException("Paths not defined.");
+    }
+
+    @SuppressWarnings("unchecked")
+    static Collection<String> getColumns(Map<String, ?> args) {
+        return (Collection<String>) args.get("columns");
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, ?> getWhere(Map<String, ?> args) {
+        Object where = args.get("where");
+        if (where != null && !(where instanceof Map)) {
+            throw new IllegalArgumentException("Use map of conditions for where.");
+        }
+
+        return (Map<String, ?>) where;
+    }
+
+    static boolean isParallel(Map<String, ?> args) {
+        return Boolean.TRUE.equals(args.get("parallel"));
+    }
+
+    static boolean isLazy(Map<String, ?> args) {
+        return Boolean.TRUE.equals(args.get("lazy"));
+    }
+
+    static boolean isTable(Map<String, ?> args) {
+        return Boolean.TRUE.equals(args.get("table"));
+    }
+
+    static boolean isAsync(Map<String, ?> args) {
+        return Boolean.TRUE.equals(args.get("async"));
+    }
+
+    static boolean isSnapshot(Map<String, ?> args) {
+        return Boolean.TRUE.equals(args.get("snapshot"));
+    }
+
+    static int getThreads(Map<String, ?> args) {
+        Number threads = (Number) args.get("threads");
+        if (threads == null) {
+            return Threads.defaultThreads();
+        }
+        if (threads.intValue() < 1) {
+            throw new IllegalArgumentException("Use at least one thread.");
+        }
+
+        return threads.intValue();
+    }
+
     static Charset getCharset(Map<String, ?> args) {
         CharSequence charsetName = (CharSequence) args.get("charset");
 
         return charsetName != null ? Charset.forName(charsetName.toString()) : UTF_8;
     }
 
-    static CsvSchema.Builder getSchema(Map<String, ?> args) {
+    static char getSeparator(Map<String, ?> args) {
         CharSequence separator = (CharSequence) args.get("separator");
         if (separator == null) {
-            separator = ",";
+            return ',';
         }
         if (separator.length() != 1) {
             throw new IllegalArgumentException("Use single character as separator.");
         }
 
+        return separator.charAt(0);
+    }
+
+    static char getQualifier(Map<String, ?> args) {
         CharSequence qualifier = (CharSequence) args.get("qualifier");
         if (qualifier == null) {
-            qualifier = "\"";
+            return '"';
         }
         if (qualifier.length() != 1) {
             throw new IllegalArgumentException("Use single character as qualifier.");
         }
 
-        CsvSchema.Builder schema = CsvSchema.builder();
-        schema.setColumnSeparator(separator.charAt(0));
-        schema.setQuoteChar(qualifier.charAt(0));
-        return schema;
+        return qualifier.charAt(0);
     }
 
 }
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.lang.String.format;
+
+/**
+ * Types of joins of records by key.
+ * 
+ * <p>
+ * Joined record is the left record merged with the right one, see {@link Record#merge(Record)}. Records without match
+ * are copied into result as is, if join keeps them. Semi and anti joins return the left records themselves.
+ * 
+ * @author hrytsenko.anton
+ */
+enum JoinType {
+
+    /**
+     * Only matched records.
+     */
+    INNER(false, false),
+    /**
+     * Matched records and left records without match.
+     */
+    LEFT(true, false),
+    /**
+     * Matched records and right records without match.
+     */
+    RIGHT(false, true),
+    /**
+     * Matched records and records without match from both sides.
+     */
+    FULL(true, true),
+    /**
+     * Left records, that have match.
+     */
+    SEMI(false, false),
+    /**
+     * Left records, that have no match.
+     */
+    ANTI(true, false);
+
+    private final boolean keepsLeft;
+    private final boolean keepsRight;
+
+    private JoinType(boolean keepsLeft, boolean keepsRight) {
+        this.keepsLeft = keepsLeft;
+        this.keepsRight = keepsRight;
+    }
+
+    /**
+     * Checks that left records without match are kept.
+     * 
+     * @return <code>true</code> if such records are kept.
+     */
+    boolean keepsLeft() {
+        return keepsLeft;
+    }
+
+    /**
+     * Checks that right records without match are kept.
+     * 
+     * @return <code>true</code> if such records are kept.
+     */
+    boolean keepsRight() {
+        return keepsRight;
+    }
+
+    /**
+     * Checks that matched records are joined.
+     * 
+     * @return <code>true</code> if matched records are joined, and <code>false</code> if only left records are
+     *         returned.
+     */
+    boolean joins() {
+        return this != SEMI && this != ANTI;
+    }
+
+    /**
+     * Returns type of join by its name.
+     * 
+     * @param name
+     *            the name of type, case-insensitive.
+     * 
+     * @return the type of join.
+     * 
+     * @throws IllegalArgumentException
+     *             if type is not supported.
+     */
+    static JoinType of(String name) {
+        for (JoinType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException(format("Join %s not supported.", name));
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Joins two sets of records, that are sorted by key, in one pass.
+ * 
+ * <p>
+ * Keys are compared as strings, so both sets should be sorted by key in natural order of strings. Only the records of
+ * the right set with the current key are kept in memory, so memory is bounded by the largest group of duplicate keys.
+ * 
+ * <p>
+ * Results follow the order of keys. For each key, each left record is joined with all right records in their order.
+ * Records without match are placed by their keys. Semi and anti joins return the left records.
+ * 
+ * @author hrytsenko.anton
+ */
+final class MergeJoin implements Iterator<Record>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("APP");
+
+    private final String field;
+    private final JoinType type;
+
+    private final Iterable<Record> leftSet;
+    private final Iterable<Record> rightSet;
+    private final Side left;
+    private final Side right;
+
+    private String runKey;
+    private final List<Record> run = new ArrayList<>();
+
+    private final Deque<Record> pending = new ArrayDeque<>();
+    private boolean finished;
+
+    private long leftMatched;
+    private long leftUnmatched;
+    private long rightMatched;
+    private long rightUnmatched;
+    private long results;
+
+    /**
+     * Creates join.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param type
+     *            the type of join.
+     * @param leftSet
+     *            the left set, sorted by key.
+     * @param rightSet
+     *            the right set, sorted by key.
+     */
+    MergeJoin(String field, JoinType type, Iterable<Record> leftSet, Iterable<Record> rightSet) {
+        this.field = field;
+        this.type = type;
+
+        this.leftSet = leftSet;
+        this.rightSet = rightSet;
+        this.left = new Side(leftSet.iterator());
+        this.right = new Side(rightSet.iterator());
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (pending.isEmpty() && !finished) {
+            advance();
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ++results;
+        return pending.poll();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeSet(leftSet);
+        } finally {
+            closeSet(rightSet);
+        }
+    }
+
+    /**
+     * Processes the next left record or the next key.
+     */
+    private void advance() {
+        if (left.head != null && runKey != null && left.key.equals(runKey)) {
+            joinLeft(left.take());
+            return;
+        }
+        if (runKey != null) {
+            run.clear();
+            runKey = null;
+        }
+
+        if (left.head == null && right.head == null) {
+            finished = true;
+            LOGGER.info("Join: {} and {} matched, {} and {} not matched, {} results.", leftMatched, rightMatched,
+                    leftUnmatched, rightUnmatched, results);
+            return;
+        }
+
+        int order = compare(left.key, right.key);
+        if (order < 0) {
+            ++leftUnmatched;
+            Record record = left.take();
+            if (type.keepsLeft()) {
+                pending.add(type.joins() ? record.copy() : record);
+            }
+        } else if (order > 0) {
+            ++rightUnmatched;
+            Record record = right.take();
+            if (type.keepsRight()) {
+                pending.add(record.copy());
+            }
+        } else {
+            runKey = right.key;
+            while (right.head != null && right.key.equals(runKey)) {
+                run.add(right.take());
+            }
+            rightMatched += run.size();
+        }
+    }
+
+    private void joinLeft(Record record) {
+        ++leftMatched;
+        if (type == JoinType.SEMI) {
+            pending.add(record);
+        } else if (type.joins()) {
+            for (Record other : run) {
+                pending.add(record.merge(other));
+            }
+        }
+    }
+
+    /**
+     * Compares keys, the absent key follows all other keys.
+     */
+    private static int compare(String key, String otherKey) {
+        if (key == null) {
+            return 1;
+        }
+        if (otherKey == null) {
+            return -1;
+        }
+        return key.compareTo(otherKey);
+    }
+
+    private static void closeSet(Iterable<Record> set) throws IOException {
+        if (set instanceof Closeable) {
+            ((Closeable) set).close();
+        }
+    }
+
+    /**
+     * Reads one set of records and checks the order of keys.
+     */
+    private final class Side {
+
+        private final Iterator<Record> records;
+
+        private Record head;
+        private String key;
+
+        Side(Iterator<Record> records) {
+            this.records = records;
+            read();
+        }
+
+        Record take() {
+            Record record = head;
+            read();
+            return record;
+        }
+
+        private void read() {
+            if (!records.hasNext()) {
+                head = null;
+                key = null;
+                return;
+            }
+
+            String previous = key;
+            head = records.next();
+            key = head.getAt(field);
+            if (key == null) {
+                throw new IllegalArgumentException("One or more record has no key.");
+            }
+            if (previous != null && previous.compareTo(key) > 0) {
+                throw new IllegalArgumentException(format("Records are not sorted by %s.", field));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that compresses data in GZIP format using several threads.
+ * 
+ * <p>
+ * Data is split into blocks, that are compressed independently. Each block uses the tail of the previous block as
+ * dictionary, and all blocks except the last one are ended by sync flush. So compressed blocks can be concatenated
+ * into a single deflate stream, that is almost as compact as the one produced by a single thread.
+ * 
+ * @author hrytsenko.anton
+ */
+final class ParallelGzipOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int BLOCKS_PER_THREAD = 2;
+
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final OutputStream out;
+    private final ExecutorService pool;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private final CRC32 crc = new CRC32();
+    private long size;
+
+    private byte[] previous;
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockSize;
+
+    private boolean closed;
+
+    /**
+     * Creates stream.
+     * 
+     * @param out
+     *            the stream for compressed data.
+     * @param threads
+     *            the number of threads for compression.
+     * 
+     * @throws IOException
+     *             if header could not be written.
+     */
+    ParallelGzipOutputStream(OutputStream out, int threads) throws IOException {
+        this.out = out;
+        this.pool = Threads.newPool("gzip", threads);
+        this.maxPending = threads * BLOCKS_PER_THREAD;
+
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = Math.min(length, BLOCK_SIZE - blockSize);
+            System.arraycopy(data, offset, block, blockSize, count);
+            blockSize += count;
+            offset += count;
+            length -= count;
+
+            if (blockSize == BLOCK_SIZE) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            submitBlock(true);
+            while (!pending.isEmpty()) {
+                writeBlock();
+            }
+
+            writeInt((int) crc.getValue());
+            writeInt((int) size);
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockSize;
+        final byte[] dictionary = previous;
+
+        crc.update(data, 0, length);
+        size += length;
+
+        pending.add(pool.submit(new Callable<byte[]>() {
+
+            @Override
+            public byte[] call() {
+                return compress(data, length, dictionary, last);
+            }
+
+        }));
+
+        previous = data;
+        block = new byte[BLOCK_SIZE];
+        blockSize = 0;
+
+        while (pending.size() > maxPending) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        out.write(Threads.await(pending.poll()));
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+
+    private static byte[] compress(byte[] data, int length, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(data, 0, length);
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[BLOCK_SIZE / 2];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+}
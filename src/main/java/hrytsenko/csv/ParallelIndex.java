@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.util.Arrays.copyOf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds distinct values, groups and mappings of records using several threads.
+ * 
+ * <p>
+ * Records are split into chunks, and for each chunk threads read keys and split records into partitions by hash of
+ * key. Then each partition builds its own hash table, so no table is shared by threads. At last, keys of all partitions
+ * are collected in order of their first records, so results are the same as for single thread.
+ * 
+ * @author hrytsenko.anton
+ */
+final class ParallelIndex {
+
+    private static final int MIN_RECORDS = 16 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final String field;
+    private final List<Record> records;
+    private final int threads;
+
+    /**
+     * Creates index for records.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param records
+     *            the records with random access.
+     * @param threads
+     *            the number of threads.
+     */
+    ParallelIndex(String field, List<Record> records, int threads) {
+        this.field = field;
+        this.records = records;
+        this.threads = threads;
+    }
+
+    /**
+     * Checks that records are worth to be processed by several threads.
+     * 
+     * @param set
+     *            the set of records.
+     * @param threads
+     *            the number of threads.
+     * 
+     * @return <code>true</code> if set is large list with random access and there are several threads.
+     */
+    static boolean isApplicable(Iterable<Record> set, int threads) {
+        return threads > 1 && set instanceof List && set instanceof RandomAccess
+                && ((List<?>) set).size() >= MIN_RECORDS;
+    }
+
+    /**
+     * Finds distinct values of field.
+     * 
+     * @return the distinct values in order of their first records.
+     */
+    List<String> distinct() {
+        List<String> values = new ArrayList<>();
+        for (Entry entry : build(false, false)) {
+            if (entry != null) {
+                values.add(entry.key);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Splits records into groups.
+     * 
+     * @return the grouped records in order of their first records.
+     */
+    Map<String, List<Record>> group() {
+        Map<String, List<Record>> groupedSet = new LinkedHashMap<>();
+        for (Entry entry : build(true, false)) {
+            if (entry != null) {
+                groupedSet.put(entry.key, entry.group);
+            }
+        }
+        return groupedSet;
+    }
+
+    /**
+     * Maps the last record for each key.
+     * 
+     * @return the mapped records in order of first records for their keys.
+     */
+    Map<String, Record> map() {
+        Map<String, Record> mappedSet = new LinkedHashMap<>();
+        for (Entry entry : build(false, true)) {
+            if (entry != null) {
+                mappedSet.put(entry.key, entry.last);
+            }
+        }
+        return mappedSet;
+    }
+
+    /**
+     * Builds entries for all keys.
+     * 
+     * @return the entries by position of their first records, and <code>null</code> for other positions.
+     */
+    private Entry[] build(final boolean grouped, final boolean mapped) {
+        final int partitions = threads;
+        final int chunkSize = Math.max(records.size() / (threads * CHUNKS_PER_THREAD), 1);
+        final int chunks = (records.size() + chunkSize - 1) / chunkSize;
+
+        final String[] keys = new String[records.size()];
+        final IntList[][] positions = new IntList[chunks][partitions];
+        final Entry[] entries = new Entry[records.size()];
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<RecursiveAction> readTasks = new ArrayList<>();
+            for (int chunk = 0; chunk < chunks; ++chunk) {
+                final int start = chunk * chunkSize;
+                final int end = Math.min(start + chunkSize, records.size());
+                final IntList[] chunkPositions = positions[chunk];
+                readTasks.add(new RecursiveAction() {
+
+                    @Override
+                    protected void compute() {
+                        for (int partition = 0; partition < partitions; ++partition) {
+                            chunkPositions[partition] = new IntList();
+                        }
+                        for (int i = start; i < end; ++i) {
+                            Record record = records.get(i);
+                            if (!record.contains(field)) {
+                                throw new IllegalArgumentException("One or more record has no key.");
+                            }
+                            keys[i] = record.getAt(field);
+                            chunkPositions[partitionOf(keys[i], partitions)].add(i);
+                        }
+                    }
+
+                });
+            }
+            invokeAll(pool, readTasks);
+
+            List<RecursiveAction> buildTasks = new ArrayList<>();
+            for (int partition = 0; partition < partitions; ++partition) {
+                final int current = partition;
+                buildTasks.add(new RecursiveAction() {
+
+                    @Override
+                    protected void compute() {
+                        Map<String, Entry> table = new HashMap<>();
+                        for (IntList[] chunkPositions : positions) {
+                            IntList partitionPositions = chunkPositions[current];
+                            for (int j = 0; j < partitionPositions.size; ++j) {
+                                int i = partitionPositions.values[j];
+                                Entry entry = table.get(keys[i]);
+                                if (entry == null) {
+                                    entry = new Entry(keys[i], grouped);
+                                    table.put(keys[i], entry);
+                                    entries[i] = entry;
+                                }
+                                if (grouped) {
+                                    entry.group.add(records.get(i));
+                                }
+                                if (mapped) {
+                                    entry.last = records.get(i);
+                                }
+                            }
+                        }
+                    }
+
+                });
+            }
+            invokeAll(pool, buildTasks);
+        } finally {
+            pool.shutdown();
+        }
+        return entries;
+    }
+
+    private static int partitionOf(String key, int partitions) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % partitions;
+    }
+
+    private static void invokeAll(ForkJoinPool pool, final List<RecursiveAction> tasks) {
+        pool.invoke(new RecursiveAction() {
+
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+
+        });
+    }
+
+    /**
+     * Key with its records.
+     */
+    private static final class Entry {
+
+        private final String key;
+        private final List<Record> group;
+        private Record last;
+
+        private Entry(String key, boolean grouped) {
+            this.key = key;
+            this.group = grouped ? new ArrayList<Record>() : null;
+        }
+
+    }
+
+    /**
+     * Growable list of positions.
+     */
+    private static final class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,304 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.IO.getCharset;
+import static hrytsenko.csv.IO.getQualifier;
+import static hrytsenko.csv.IO.getSeparator;
+import static hrytsenko.csv.IO.getThreads;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyIterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reader that parses CSV file in parallel.
+ * 
+ * <p>
+ * File is memory-mapped and split into chunks at boundaries of records, with respect to qualified values. Chunks are
+ * parsed by pool of threads, and records are returned in the same order as in file. Only a limited number of chunks
+ * is parsed ahead, so memory does not depend on size of file.
+ * 
+ * <p>
+ * Only charsets, where separators and qualifiers are always encoded as single bytes, are supported.
+ * 
+ * @author hrytsenko.anton
+ */
+final class ParallelReader implements Iterator<Record>, Closeable {
+
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    private static final byte[] UTF_8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private final FileChannel channel;
+    private final long size;
+    private final Charset charset;
+    private final char separator;
+    private final char qualifier;
+
+    private final ExecutorService pool;
+    private final int maxPending;
+    private final Deque<Future<List<Record>>> pending = new ArrayDeque<>();
+
+    private final Map<String, ?> args;
+    private RecordFactory factory;
+    private Iterator<Record> current = emptyIterator();
+    private long position;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private ParallelReader(FileChannel channel, Map<String, ?> args) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.charset = getCharset(args);
+        this.separator = getSeparator(args);
+        this.qualifier = getQualifier(args);
+        this.args = args;
+
+        int threads = getThreads(args);
+        this.pool = Threads.newPool("parser", threads);
+        this.maxPending = threads * CHUNKS_PER_THREAD;
+    }
+
+    /**
+     * Checks that file could be parsed in parallel.
+     * 
+     * <p>
+     * Chunks are split by bytes, so separator, qualifier and line breaks should be encoded by their ASCII bytes.
+     * 
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return <code>true</code> if parallel parsing is supported.
+     */
+    static boolean isSupported(Map<String, ?> args) {
+        Charset charset = getCharset(args);
+        if (!charset.canEncode()) {
+            return false;
+        }
+        boolean singleByte = charset.equals(UTF_8) || charset.newEncoder().maxBytesPerChar() == 1;
+
+        return singleByte && isAscii(charset, getSeparator(args)) && isAscii(charset, getQualifier(args))
+                && isAscii(charset, '\r') && isAscii(charset, '\n');
+    }
+
+    /**
+     * Opens file for parallel parsing.
+     * 
+     * @param path
+     *            the path to file.
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the reader for records.
+     * 
+     * @throws IOException
+     *             if file could not be opened.
+     */
+    static ParallelReader open(Path path, Map<String, ?> args) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ParallelReader reader = new ParallelReader(channel, args);
+            reader.readHeader();
+            return reader;
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (!current.hasNext()) {
+                submitChunks();
+
+                Future<List<Record>> chunk = pending.poll();
+                if (chunk == null) {
+                    return false;
+                }
+                current = Threads.await(chunk).iterator();
+            }
+            return true;
+        } catch (IOException exception) {
+            throw new IllegalStateException("Could not read file.", exception);
+        }
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        channel.close();
+    }
+
+    private void readHeader() throws IOException {
+        position = hasBom() ? UTF_8_BOM.length : 0;
+
+        long end = nextBoundary(position, 0);
+        CharBuffer header = charset.decode(channel.map(FileChannel.MapMode.READ_ONLY, position, end - position));
+        position = end;
+
+        factory = new RecordFactory(RecordReader.readHeader(new Tokenizer(header, separator, qualifier)), args);
+    }
+
+    private boolean hasBom() throws IOException {
+        if (!charset.equals(UTF_8) || size < UTF_8_BOM.length) {
+            return false;
+        }
+
+        MappedByteBuffer buffer = window(0);
+        for (int i = 0; i < UTF_8_BOM.length; ++i) {
+            if (buffer.get(i) != UTF_8_BOM[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void submitChunks() throws IOException {
+        while (pending.size() < maxPending && position < size) {
+            final long start = position;
+            final long end = nextBoundary(start, CHUNK_SIZE);
+            position = end;
+
+            pending.add(pool.submit(new Callable<List<Record>>() {
+
+                @Override
+                public List<Record> call() throws IOException {
+                    return parseChunk(start, end);
+                }
+
+            }));
+        }
+    }
+
+    private List<Record> parseChunk(long start, long end) throws IOException {
+        CharBuffer chunk = charset.decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+
+        RecordReader reader = new RecordReader(new Tokenizer(chunk, separator, qualifier), factory);
+        List<Record> records = new ArrayList<>();
+        while (reader.hasNext()) {
+            records.add(reader.next());
+        }
+        return records;
+    }
+
+    /**
+     * Finds the end of the first record, that ends after given number of bytes.
+     * 
+     * <p>
+     * Records are separated by LF or CR, that are not qualified. As in {@link Tokenizer}, qualifier opens qualified
+     * part only at the start of value, and qualifiers inside of qualified part are escaped by doubling. Chunk always
+     * starts at the beginning of record, so qualifiers are tracked from its start. CRLF could be split between chunks,
+     * because empty lines are skipped.
+     */
+    private long nextBoundary(long start, int minLength) throws IOException {
+        long target = start + minLength;
+        boolean qualified = false;
+        boolean closing = false;
+        boolean empty = true;
+
+        long offset = start;
+        while (offset < size) {
+            MappedByteBuffer buffer = window(offset);
+            int limit = buffer.limit();
+            for (int i = (int) (offset - windowStart); i < limit; ++i) {
+                byte next = buffer.get(i);
+                if (qualified) {
+                    if (closing) {
+                        closing = false;
+                        if (next == qualifier) {
+                            empty = false;
+                            continue;
+                        }
+                        qualified = false;
+                    } else {
+                        if (next == qualifier) {
+                            closing = true;
+                        } else {
+                            empty = false;
+                        }
+                        continue;
+                    }
+                }
+
+                if (next == qualifier && empty) {
+                    qualified = true;
+                } else if (next == '\n' || next == '\r') {
+                    if (windowStart + i >= target) {
+                        return windowStart + i + 1;
+                    }
+                    empty = true;
+                } else {
+                    empty = next == separator;
+                }
+            }
+            offset = windowStart + limit;
+        }
+        return size;
+    }
+
+    private MappedByteBuffer window(long offset) throws IOException {
+        if (window == null || offset < windowStart || offset >= windowStart + window.limit()) {
+            windowStart = offset;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, size - offset));
+        }
+        return window;
+    }
+
+    private static boolean isAscii(Charset charset, char c) {
+        byte[] bytes = String.valueOf(c).getBytes(charset);
+        return c < 0x80 && bytes.length == 1 && bytes[0] == c;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.io.IOException;
+
+/**
+ * Source of values of lazy record, that keeps them until they are accessed.
+ * 
+ * <p>
+ * Values are indexed by position of field in record. Row of CSV file keeps unqualified characters of values, see
+ * {@link #of(char[], int[], int[])}, and record of {@link RecordTable} keeps its encoded data.
+ * 
+ * @author hrytsenko.anton
+ */
+abstract class RawRow {
+
+    /**
+     * Creates row of CSV file.
+     * 
+     * @param chars
+     *            the characters of row.
+     * @param starts
+     *            the starts of values.
+     * @param ends
+     *            the ends of values.
+     * 
+     * @return the row.
+     */
+    static RawRow of(char[] chars, int[] starts, int[] ends) {
+        return new CharRow(chars, starts, ends);
+    }
+
+    /**
+     * Creates string for value.
+     * 
+     * @param i
+     *            the index of value.
+     * 
+     * @return the value.
+     */
+    abstract String get(int i);
+
+    /**
+     * Writes value without creating string, if possible.
+     * 
+     * @param i
+     *            the index of value.
+     * @param formatter
+     *            the formatter for output.
+     * 
+     * @throws IOException
+     *             if value could not be written.
+     */
+    void format(int i, CsvFormatter formatter) throws IOException {
+        formatter.value(get(i));
+    }
+
+    private static final class CharRow extends RawRow {
+
+        private final char[] chars;
+        private final int[] starts;
+        private final int[] ends;
+
+        CharRow(char[] chars, int[] starts, int[] ends) {
+            this.chars = chars;
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        @Override
+        String get(int i) {
+            return new String(chars, starts[i], ends[i] - starts[i]);
+        }
+
+        @Override
+        void format(int i, CsvFormatter formatter) throws IOException {
+            formatter.value(chars, starts[i], ends[i]);
+        }
+
+    }
+
+}
@@ -20,16 +20,17 @@
 package hrytsenko.csv;
 
 import static java.lang.String.format;
-import static java.util.Arrays.asList;
+import static java.util.Arrays.copyOf;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 import groovy.lang.GroovyObjectSupport;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
@@ -43,19 +44,86 @@ import org.apache.commons.lang3.StringUtils;
  * <p>
  * Names of field are case-sensitive. I.e. script should take care of naming of fields.
  * 
+ * <p>
+ * Record keeps values in array, and names of fields in {@link Header}, that is shared by records of the same shape.
+ * So fields are found in constant time, and records loaded from the same file do not keep their own fields.
+ * 
+ * <p>
+ * Values of typed fields are also kept in parsed form, so typed accessors do not parse them again.
+ * 
+ * <p>
+ * Copy of record shares values with original record, until one of them is changed. So copy and merge cost in
+ * proportion to the changed fields.
+ * 
+ * <p>
+ * Lazy record keeps characters of row, and strings for its values are created on first access. Values, that were never
+ * accessed, are written to file as is.
+ * 
+ * <p>
+ * Read-only record, e.g. record of {@link RecordTable}, could not be changed, but its copy could be.
+ * 
  * @author hrytsenko.anton
  */
 public class Record extends GroovyObjectSupport {
 
-    private List<String> fields;
-    private Map<String, String> values;
+    private static final String[] NO_VALUES = {};
+
+    private Header header;
+    private String[] values;
+    private long[] numbers;
+    private RawRow raw;
+    private boolean shared;
+    private boolean readOnly;
 
     /**
      * Creates an empty record.
      */
     public Record() {
-        fields = new ArrayList<>();
-        values = new HashMap<>();
+        header = Header.EMPTY;
+        values = NO_VALUES;
+    }
+
+    /**
+     * Creates record with given header.
+     * 
+     * @param header
+     *            the header of record.
+     * @param values
+     *            the values of all fields of header.
+     */
+    Record(Header header, String[] values) {
+        this(header, values, null);
+    }
+
+    /**
+     * Creates lazy record with given header.
+     * 
+     * @param header
+     *            the header of record.
+     * @param values
+     *            the values of fields, or <code>null</code> for ones to be taken from row.
+     * @param raw
+     *            the characters of row.
+     */
+    Record(Header header, String[] values, RawRow raw) {
+        this.header = header;
+        this.values = values;
+        this.raw = raw;
+
+        if (header.isTyped()) {
+            numbers = new long[header.slotCount()];
+            for (int i = 0; i < values.length; ++i) {
+                parse(i);
+            }
+        }
+    }
+
+    private Record(Record original) {
+        this.header = original.header;
+        this.values = original.values;
+        this.numbers = original.numbers;
+        this.raw = original.raw;
+        this.shared = true;
     }
 
     /**
@@ -69,7 +137,8 @@ public class Record extends GroovyObjectSupport {
     public String getAt(String field) {
         validateNotEmpty(field);
 
-        return values.get(field);
+        int pos = header.indexOf(field);
+        return pos < 0 ? null : value(pos);
     }
 
     /**
@@ -83,8 +152,7 @@ public class Record extends GroovyObjectSupport {
     public String getAt(int i) {
         validateIndex(i);
 
-        String field = fields.get(i);
-        return values.get(field);
+        return value(i);
     }
 
     @Override
@@ -105,11 +173,15 @@ public class Record extends GroovyObjectSupport {
      */
     public void putAt(String field, Object value) {
         validateNotEmpty(field);
+        unshare();
 
-        if (!fields.contains(field)) {
-            fields.add(field);
+        int pos = header.indexOf(field);
+        if (pos < 0) {
+            add(header.add(field), value);
+            return;
         }
-        values.put(field, value == null ? EMPTY : value.toString());
+        values[pos] = value == null ? EMPTY : value.toString();
+        parse(pos);
     }
 
     /**
@@ -125,8 +197,84 @@ public class Record extends GroovyObjectSupport {
      */
     public void putAt(int i, Object value) {
         validateIndex(i);
+        unshare();
 
-        putAt(fields.get(i), value);
+        values[i] = value == null ? EMPTY : value.toString();
+        parse(i);
+    }
+
+    /**
+     * Returns value of field as integer.
+     * 
+     * <p>
+     * If field has type <code>long</code>, then parsed value is returned, see {@link IO}.
+     * 
+     * @param field
+     *            the name of field.
+     * 
+     * @return the value of field.
+     * 
+     * @throws NumberFormatException
+     *             if value is not integer.
+     */
+    public long getLong(String field) {
+        validateContains(field);
+
+        int pos = header.indexOf(field);
+        if (header.type(pos) == FieldType.LONG) {
+            return numbers[header.slot(pos)];
+        }
+        return Long.parseLong(value(pos));
+    }
+
+    /**
+     * Returns value of field as floating-point number.
+     * 
+     * <p>
+     * If field has type <code>double</code> or <code>long</code>, then parsed value is returned, see {@link IO}.
+     * 
+     * @param field
+     *            the name of field.
+     * 
+     * @return the value of field.
+     * 
+     * @throws NumberFormatException
+     *             if value is not number.
+     */
+    public double getDouble(String field) {
+        validateContains(field);
+
+        int pos = header.indexOf(field);
+        FieldType type = header.type(pos);
+        if (type == FieldType.DOUBLE) {
+            return Double.longBitsToDouble(numbers[header.slot(pos)]);
+        }
+        if (type == FieldType.LONG) {
+            return numbers[header.slot(pos)];
+        }
+        return Double.parseDouble(value(pos));
+    }
+
+    /**
+     * Returns value of field as date in format <code>yyyy-MM-dd</code>, i.e. midnight of this date in UTC.
+     * 
+     * <p>
+     * If field has type <code>date</code>, then parsed value is returned, see {@link IO}.
+     * 
+     * @param field
+     *            the name of field.
+     * 
+     * @return the value of field.
+     * 
+     * @throws IllegalArgumentException
+     *             if value is not date.
+     */
+    public Date getDate(String field) {
+        validateContains(field);
+
+        int pos = header.indexOf(field);
+        long days = header.type(pos) == FieldType.DATE ? numbers[header.slot(pos)] : FieldType.DATE.parse(value(pos));
+        return new Date(days * FieldType.MILLIS_PER_DAY);
     }
 
     @Override
@@ -161,7 +309,7 @@ public class Record extends GroovyObjectSupport {
     public boolean contains(String field) {
         validateNotEmpty(field);
 
-        return fields.contains(field);
+        return header.indexOf(field) >= 0;
     }
 
     /**
@@ -173,8 +321,12 @@ public class Record extends GroovyObjectSupport {
     public void remove(String... removedFields) {
         validateContains(removedFields);
 
-        fields.removeAll(asList(removedFields));
-        values.keySet().retainAll(fields);
+        BitSet retained = new BitSet();
+        retained.set(0, header.size());
+        for (String removedField : removedFields) {
+            retained.clear(header.indexOf(removedField));
+        }
+        retain(retained);
     }
 
     /**
@@ -187,13 +339,20 @@ public class Record extends GroovyObjectSupport {
      */
     public void rename(String oldField, String newField) {
         validateContains(oldField);
+        validateNotEmpty(newField);
 
-        int pos = fields.indexOf(oldField);
-        fields.set(pos, newField);
+        validateWritable();
 
-        String value = values.get(oldField);
-        values.remove(oldField);
-        values.put(newField, value);
+        int pos = header.indexOf(oldField);
+        int otherPos = header.indexOf(newField);
+        if (otherPos == pos) {
+            return;
+        }
+        if (otherPos >= 0) {
+            remove(newField);
+            pos = header.indexOf(oldField);
+        }
+        header = header.rename(pos, newField);
     }
 
     /**
@@ -205,8 +364,11 @@ public class Record extends GroovyObjectSupport {
     public void retain(String... retainedFields) {
         validateContains(retainedFields);
 
-        fields.retainAll(asList(retainedFields));
-        values.keySet().retainAll(fields);
+        BitSet retained = new BitSet();
+        for (String retainedField : retainedFields) {
+            retained.set(header.indexOf(retainedField));
+        }
+        retain(retained);
     }
 
     /**
@@ -215,7 +377,7 @@ public class Record extends GroovyObjectSupport {
      * @return the names of fields.
      */
     public Collection<String> fields() {
-        return new ArrayList<>(fields);
+        return header.fields();
     }
 
     /**
@@ -225,8 +387,8 @@ public class Record extends GroovyObjectSupport {
      */
     public Map<String, String> values() {
         Map<String, String> copiedValues = new LinkedHashMap<>();
-        for (String field : fields) {
-            copiedValues.put(field, values.get(field));
+        for (int i = 0; i < header.size(); ++i) {
+            copiedValues.put(header.field(i), value(i));
         }
         return copiedValues;
     }
@@ -237,9 +399,8 @@ public class Record extends GroovyObjectSupport {
      * @return the copy of record.
      */
     public Record copy() {
-        Record result = new Record();
-        copyAll(result, this);
-        return result;
+        shared = true;
+        return new Record(this);
     }
 
     /**
@@ -258,9 +419,178 @@ public class Record extends GroovyObjectSupport {
         return result;
     }
 
+    /**
+     * Copies values of source record into target one. Fields with the same values are skipped, so target record shares
+     * its values while they are not changed.
+     */
     private static void copyAll(Record target, Record source) {
-        for (String field : source.fields) {
-            target.putAt(field, source.values.get(field));
+        for (int i = 0; i < source.header.size(); ++i) {
+            String field = source.header.field(i);
+            String value = source.value(i);
+
+            int pos = target.header.indexOf(field);
+            if (pos < 0 || !value.equals(target.value(pos))) {
+                target.putAt(field, value);
+            }
+        }
+    }
+
+    /**
+     * Takes own copy of values, if they are shared with other record.
+     */
+    private void unshare() {
+        validateWritable();
+
+        if (shared) {
+            values = values.clone();
+            numbers = numbers != null ? numbers.clone() : null;
+            shared = false;
+        }
+    }
+
+    /**
+     * Makes record read-only.
+     * 
+     * @return this record.
+     */
+    Record readOnly() {
+        readOnly = true;
+        return this;
+    }
+
+    /**
+     * Returns header of record.
+     * 
+     * @return the header.
+     */
+    Header header() {
+        return header;
+    }
+
+    /**
+     * Returns parsed value of typed field, see {@link FieldType}.
+     * 
+     * @param pos
+     *            the position of field, whose type is defined by header.
+     * 
+     * @return the parsed value.
+     */
+    long numberAt(int pos) {
+        return numbers[header.slot(pos)];
+    }
+
+    /**
+     * Writes value of field without creating string, if value was not accessed yet.
+     * 
+     * @param pos
+     *            the position of field or <code>-1</code> to write empty value.
+     * @param formatter
+     *            the formatter for output.
+     * 
+     * @throws IOException
+     *             if value could not be written.
+     */
+    void formatAt(int pos, CsvFormatter formatter) throws IOException {
+        if (pos < 0) {
+            formatter.value(EMPTY);
+        } else if (values[pos] == null && raw != null) {
+            raw.format(pos, formatter);
+        } else {
+            formatter.value(values[pos]);
+        }
+    }
+
+    private String value(int pos) {
+        String value = values[pos];
+        if (value == null && raw != null) {
+            value = raw.get(pos);
+            values[pos] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Adds field at the end of record.
+     * 
+     * @param addedHeader
+     *            the header derived by adding of field to header of record.
+     * @param value
+     *            the value for field.
+     */
+    void add(Header addedHeader, Object value) {
+        unshare();
+
+        int pos = header.size();
+        if (pos == values.length) {
+            values = copyOf(values, Math.max(8, pos * 2));
+        }
+        header = addedHeader;
+        values[pos] = value == null ? EMPTY : value.toString();
+        parse(pos);
+    }
+
+    /**
+     * Changes names of fields.
+     * 
+     * @param renamedHeader
+     *            the header derived by renaming of fields of header of record.
+     */
+    void rename(Header renamedHeader) {
+        validateWritable();
+
+        header = renamedHeader;
+    }
+
+    /**
+     * Retains fields at given positions.
+     * 
+     * @param retained
+     *            the positions of retained fields.
+     */
+    void retain(BitSet retained) {
+        unshare();
+
+        int size = header.size();
+        if (raw != null) {
+            for (int i = 0; i < size; ++i) {
+                value(i);
+            }
+            raw = null;
+        }
+        Header original = header;
+        header = header.retain(retained);
+
+        int count = 0;
+        for (int i = retained.nextSetBit(0); i >= 0; i = retained.nextSetBit(i + 1)) {
+            values[count] = values[i];
+            if (header.slot(count) >= 0) {
+                numbers[header.slot(count)] = numbers[original.slot(i)];
+            }
+            ++count;
+        }
+        Arrays.fill(values, count, size, null);
+    }
+
+    /**
+     * Keeps parsed value of typed field. If value could not be parsed, then record switches to header, where field has
+     * no type.
+     */
+    private void parse(int pos) {
+        FieldType type = header.type(pos);
+        if (type == null) {
+            return;
+        }
+
+        try {
+            numbers[header.slot(pos)] = type.parse(value(pos));
+        } catch (IllegalArgumentException exception) {
+            header = header.untype(pos);
+        }
+    }
+
+    private void validateWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Record is read-only, change its copy.");
         }
     }
 
@@ -284,7 +614,7 @@ public class Record extends GroovyObjectSupport {
         if (i < 0) {
             throw new IllegalArgumentException("Negative indices not allowed.");
         }
-        if (i >= fields.size()) {
+        if (i >= header.size()) {
             throw new IllegalArgumentException("No field with such index.");
         }
     }
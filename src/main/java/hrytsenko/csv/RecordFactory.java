@@ -0,0 +1,237 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.IO.getColumns;
+import static hrytsenko.csv.IO.getWhere;
+import static hrytsenko.csv.IO.isLazy;
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates records from rows of CSV file.
+ * 
+ * <p>
+ * If columns are given, then only their values are taken from rows, and values of other columns are never turned into
+ * strings. Fields of records follow the order of given columns.
+ * 
+ * <p>
+ * If conditions are given, then rows are filtered before records are created, see {@link Filter}.
+ * 
+ * <p>
+ * If dictionary is requested for column, then its values are shared by records, see {@link Dictionary}.
+ * 
+ * <p>
+ * If type is defined for column, then its values are also kept in parsed form, see {@link FieldType}.
+ * 
+ * <p>
+ * If lazy loading is requested, then records keep characters of row, and strings for other values are created only
+ * when they are accessed, see {@link RawRow}.
+ * 
+ * <p>
+ * Records share the same {@link Header}, except of records for rows with missing values, that share header for the
+ * same number of values.
+ * 
+ * <p>
+ * If header of file has several columns with the same name, then the last of them is used for field, for columns and
+ * for conditions.
+ * 
+ * <p>
+ * Factory is thread-safe, so it could be shared by several threads.
+ * 
+ * @author hrytsenko.anton
+ */
+final class RecordFactory {
+
+    private final int width;
+    private final String[] fields;
+    private final int[] positions;
+
+    private final Dictionary[] dictionaries;
+    private final FieldType[] types;
+    private final boolean lazy;
+
+    private final Header header;
+    private final ConcurrentMap<Integer, Header> shortHeaders = new ConcurrentHashMap<>();
+
+    private final Filter filter;
+    private final int[] filterPositions;
+
+    /**
+     * Creates factory for file.
+     * 
+     * @param header
+     *            the columns from header of file.
+     * @param args
+     *            the named arguments {@link IO}.
+     */
+    RecordFactory(String[] header, Map<String, ?> args) {
+        this.width = header.length;
+
+        Collection<String> columns = getColumns(args);
+        if (columns == null) {
+            Map<String, Integer> lastPositions = new LinkedHashMap<>();
+            for (int i = 0; i < header.length; ++i) {
+                lastPositions.put(header[i], i);
+            }
+
+            fields = lastPositions.keySet().toArray(new String[lastPositions.size()]);
+            positions = new int[fields.length];
+            for (int i = 0; i < fields.length; ++i) {
+                positions[i] = lastPositions.get(fields[i]);
+            }
+        } else {
+            fields = columns.toArray(new String[columns.size()]);
+            positions = new int[fields.length];
+            for (int i = 0; i < fields.length; ++i) {
+                positions[i] = position(header, fields[i]);
+            }
+        }
+
+        this.types = FieldType.forFields(fields, args);
+        this.header = new Header(fields, types);
+        this.dictionaries = Dictionary.forFields(fields, args);
+        this.lazy = isLazy(args);
+
+        Map<String, ?> where = getWhere(args);
+        if (where == null) {
+            filter = null;
+            filterPositions = null;
+        } else {
+            filter = new Filter(where);
+            filterPositions = new int[filter.size()];
+            for (int i = 0; i < filterPositions.length; ++i) {
+                filterPositions[i] = position(header, filter.field(i));
+            }
+        }
+    }
+
+    /**
+     * Creates record from the current row.
+     * 
+     * @param row
+     *            the tokenizer positioned at row.
+     * 
+     * @return the created record or <code>null</code> if row was filtered out.
+     * 
+     * @throws IOException
+     *             if row has more values than header.
+     */
+    Record create(Tokenizer row) throws IOException {
+        int count = row.count();
+        if (count > width) {
+            throw new IOException(format("Too many values in row %d.", row.rows()));
+        }
+        if (filter != null && !accepts(row)) {
+            return null;
+        }
+
+        Header rowHeader = count == width ? header : shortHeader(count);
+        if (lazy) {
+            return createLazy(row, rowHeader);
+        }
+
+        String[] values = new String[rowHeader.size()];
+        for (int i = 0, j = 0; i < fields.length; ++i) {
+            int position = positions[i];
+            if (position < count) {
+                Dictionary dictionary = dictionaries[i];
+                values[j++] = dictionary != null ? dictionary.intern(row.value(position)) : row.get(position);
+            }
+        }
+        return new Record(rowHeader, values);
+    }
+
+    /**
+     * Creates record, that keeps characters of row. Only values of dictionary columns are taken immediately.
+     */
+    private Record createLazy(Tokenizer row, Header rowHeader) {
+        int count = row.count();
+        String[] values = new String[rowHeader.size()];
+        int[] starts = new int[values.length];
+        int[] ends = new int[values.length];
+        for (int i = 0, j = 0; i < fields.length; ++i) {
+            int position = positions[i];
+            if (position < count) {
+                Dictionary dictionary = dictionaries[i];
+                if (dictionary != null) {
+                    values[j] = dictionary.intern(row.value(position));
+                }
+                starts[j] = row.start(position);
+                ends[j] = row.end(position);
+                ++j;
+            }
+        }
+        return new Record(rowHeader, values, RawRow.of(row.chars(), starts, ends));
+    }
+
+    private Header shortHeader(int count) {
+        Header shortHeader = shortHeaders.get(count);
+        if (shortHeader != null) {
+            return shortHeader;
+        }
+
+        List<String> presentFields = new ArrayList<>();
+        List<FieldType> presentTypes = new ArrayList<>();
+        for (int i = 0; i < fields.length; ++i) {
+            if (positions[i] < count) {
+                presentFields.add(fields[i]);
+                presentTypes.add(types != null ? types[i] : null);
+            }
+        }
+        if (presentFields.size() == fields.length) {
+            shortHeader = header;
+        } else {
+            shortHeader = new Header(presentFields.toArray(new String[presentFields.size()]),
+                    types != null ? presentTypes.toArray(new FieldType[presentTypes.size()]) : null);
+        }
+
+        Header previous = shortHeaders.putIfAbsent(count, shortHeader);
+        return previous != null ? previous : shortHeader;
+    }
+
+    private boolean accepts(Tokenizer row) {
+        for (int i = 0; i < filterPositions.length; ++i) {
+            int position = filterPositions[i];
+            if (position >= row.count() || !filter.accepts(i, row.value(position))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int position(String[] header, String column) {
+        int position = asList(header).lastIndexOf(column);
+        if (position < 0) {
+            throw new IllegalArgumentException(format("Column %s not found.", column));
+        }
+        return position;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader that creates records from rows of CSV data on demand.
+ * 
+ * @author hrytsenko.anton
+ */
+final class RecordReader implements Iterator<Record>, Closeable {
+
+    private final Tokenizer tokenizer;
+    private final RecordFactory factory;
+
+    private Record next;
+
+    /**
+     * Creates reader for rows.
+     * 
+     * @param tokenizer
+     *            the source of rows.
+     * @param factory
+     *            the factory for records.
+     */
+    RecordReader(Tokenizer tokenizer, RecordFactory factory) {
+        this.tokenizer = tokenizer;
+        this.factory = factory;
+    }
+
+    /**
+     * Creates reader for CSV data, that starts with header.
+     * 
+     * @param tokenizer
+     *            the source of rows.
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the reader for records.
+     * 
+     * @throws IOException
+     *             if header could not be read.
+     */
+    static RecordReader open(Tokenizer tokenizer, Map<String, ?> args) throws IOException {
+        String[] header = readHeader(tokenizer);
+        return new RecordReader(tokenizer, new RecordFactory(header, args));
+    }
+
+    /**
+     * Reads header from CSV data.
+     * 
+     * @param tokenizer
+     *            the source of rows.
+     * 
+     * @return the columns or empty array if there is no header.
+     * 
+     * @throws IOException
+     *             if header could not be read.
+     */
+    static String[] readHeader(Tokenizer tokenizer) throws IOException {
+        return tokenizer.next() ? tokenizer.values() : new String[0];
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null && tokenizer.next()) {
+                next = factory.create(tokenizer);
+            }
+            return next != null;
+        } catch (IOException exception) {
+            throw new IllegalStateException("Could not read file.", exception);
+        }
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Record record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        tokenizer.close();
+    }
+
+}
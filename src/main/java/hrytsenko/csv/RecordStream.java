@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy sequence of records, that are read from the source on demand.
+ * 
+ * <p>
+ * Stream can be iterated only once. The source is closed when all records have been read, or when stream is closed
+ * explicitly.
+ * 
+ * @author hrytsenko.anton
+ */
+public final class RecordStream implements Iterable<Record>, Closeable {
+
+    private final Iterator<Record> records;
+    private final Closeable source;
+
+    private boolean iterated;
+    private boolean closed;
+
+    /**
+     * Creates stream of records.
+     * 
+     * @param records
+     *            the iterator over records.
+     * @param source
+     *            the source to be closed after iteration.
+     */
+    RecordStream(Iterator<Record> records, Closeable source) {
+        this.records = records;
+        this.source = source;
+    }
+
+    /**
+     * Returns iterator over records.
+     * 
+     * @return the iterator over records.
+     * 
+     * @throws IllegalStateException
+     *             if stream was already iterated.
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Stream can be iterated only once.");
+        }
+        iterated = true;
+
+        return new Iterator<Record>() {
+
+            @Override
+            public boolean hasNext() {
+                if (closed) {
+                    return false;
+                }
+
+                boolean hasNext = records.hasNext();
+                if (!hasNext) {
+                    closeQuietly(RecordStream.this);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return records.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        source.close();
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.copyOf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * List of records, that keeps their values outside of heap.
+ * 
+ * <p>
+ * Values are encoded in UTF-8 and kept in segments of temporary file, that are mapped into memory. So operating system
+ * decides which rows are kept in memory, and table could be larger than heap. Only position of each row and headers
+ * of records are kept in heap. Temporary file is deleted, when table is closed.
+ * 
+ * <p>
+ * Records are views of data in table, whose values are decoded only when they are accessed. Views are read-only, so to
+ * change record, its copy should be changed and set into table. Previous data of replaced record is not reclaimed.
+ * 
+ * <p>
+ * Table could be read by several threads, while it is not changed.
+ * 
+ * @author hrytsenko.anton
+ */
+public final class RecordTable extends AbstractList<Record> implements RandomAccess, Closeable {
+
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final int segmentSize;
+    private final FileChannel channel;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private long fileSize;
+    private int used;
+
+    private final List<Header> headers = new ArrayList<>();
+    private final Map<Header, Integer> headerIds = new HashMap<>();
+
+    private final CharsetEncoder encoder = UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private long[] rows = new long[1024];
+    private int size;
+
+    /**
+     * Creates an empty table.
+     * 
+     * @throws IOException
+     *             if temporary file could not be created.
+     */
+    public RecordTable() throws IOException {
+        this(SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates table with given records.
+     * 
+     * @param records
+     *            the records to be added.
+     * 
+     * @throws IOException
+     *             if temporary file could not be created.
+     */
+    public RecordTable(Iterable<Record> records) throws IOException {
+        this(SEGMENT_SIZE);
+
+        for (Record record : records) {
+            add(record);
+        }
+    }
+
+    /**
+     * Creates an empty table with given size of segments.
+     * 
+     * @param segmentSize
+     *            the size of segments in bytes.
+     * 
+     * @throws IOException
+     *             if temporary file could not be created.
+     */
+    RecordTable(int segmentSize) throws IOException {
+        this.segmentSize = segmentSize;
+
+        Path path = Files.createTempFile(null, ".table");
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    @Override
+    public Record get(int i) {
+        validateIndex(i);
+
+        long row = rows[i];
+        ByteBuffer segment = segments.get((int) (row >>> 32));
+        int position = (int) row;
+
+        Header header = headers.get(segment.getInt(position));
+        return new Record(header, new String[header.size()], new TableRow(segment, position + 4)).readOnly();
+    }
+
+    @Override
+    public boolean add(Record record) {
+        if (size == rows.length) {
+            rows = copyOf(rows, size * 2);
+        }
+        rows[size++] = write(record);
+        ++modCount;
+        return true;
+    }
+
+    @Override
+    public Record set(int i, Record record) {
+        validateIndex(i);
+
+        Record previous = get(i);
+        rows[i] = write(record);
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        ++modCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        size = 0;
+        segments.clear();
+        channel.close();
+    }
+
+    /**
+     * Writes record into the last segment, or into the new one, if it has not enough space.
+     * 
+     * @return the position of record.
+     */
+    private long write(Record record) {
+        Header header = record.header();
+        Integer id = headerIds.get(header);
+        if (id == null) {
+            id = headers.size();
+            headers.add(header);
+            headerIds.put(header, id);
+        }
+
+        int position = used;
+        if (segments.isEmpty() || !write(last(), id, record)) {
+            int required = 4;
+            for (int i = 0; i < header.size(); ++i) {
+                required += 4 + 3 * record.getAt(i).length();
+            }
+            addSegment(Math.max(segmentSize, required));
+            position = used;
+            write(last(), id, record);
+        }
+        return ((long) (segments.size() - 1) << 32) | position;
+    }
+
+    /**
+     * Writes record after the used part of segment.
+     * 
+     * @return <code>true</code> if record was written and <code>false</code> if segment has not enough space.
+     */
+    private boolean write(ByteBuffer segment, int id, Record record) {
+        segment.clear();
+        segment.position(used);
+
+        if (segment.remaining() < 4) {
+            return false;
+        }
+        segment.putInt(id);
+
+        for (int i = 0; i < record.header().size(); ++i) {
+            if (segment.remaining() < 4) {
+                return false;
+            }
+            int lengthPosition = segment.position();
+            segment.position(lengthPosition + 4);
+
+            encoder.reset();
+            if (encoder.encode(CharBuffer.wrap(record.getAt(i)), segment, true).isOverflow()) {
+                return false;
+            }
+            segment.putInt(lengthPosition, segment.position() - lengthPosition - 4);
+        }
+
+        used = segment.position();
+        return true;
+    }
+
+    private void addSegment(int capacity) {
+        try {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, fileSize, capacity));
+            fileSize += capacity;
+            used = 0;
+        } catch (IOException exception) {
+            throw new IllegalStateException("Could not extend table.", exception);
+        }
+    }
+
+    private ByteBuffer last() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private void validateIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(format("No record with index %d.", i));
+        }
+    }
+
+    /**
+     * Encoded values of record in segment, that are decoded on access.
+     */
+    private static final class TableRow extends RawRow {
+
+        private final ByteBuffer segment;
+        private final int start;
+
+        TableRow(ByteBuffer segment, int start) {
+            this.segment = segment;
+            this.start = start;
+        }
+
+        @Override
+        String get(int i) {
+            int position = start;
+            for (int j = 0; j < i; ++j) {
+                position += 4 + segment.getInt(position);
+            }
+
+            byte[] bytes = new byte[segment.getInt(position)];
+            ByteBuffer data = segment.duplicate();
+            data.position(position + 4);
+            data.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Writer that saves records into CSV file as they arrive.
+ * 
+ * <p>
+ * The header is defined by the given columns. If columns are not given, then the fields of the first record are used
+ * as header.
+ * 
+ * <p>
+ * If record has no value for column, then {@link org.apache.commons.lang3.StringUtils#EMPTY} is written. If columns
+ * are given, then fields not in header are skipped. Otherwise, such fields are not allowed.
+ * 
+ * <p>
+ * Values, that were loaded lazily and never accessed, are written as is, without creating strings for them.
+ * 
+ * <p>
+ * Positions of columns in record are found once for each header of records, so records are written without creating
+ * any objects for them.
+ * 
+ * @author hrytsenko.anton
+ */
+public final class RecordWriter implements Closeable, Flushable {
+
+    private final Writer dataWriter;
+    private final CsvFormatter formatter;
+
+    private String[] columns;
+    private Set<String> knownColumns;
+    private boolean projected;
+
+    private Header header;
+    private int[] positions;
+
+    private boolean started;
+
+    /**
+     * Creates writer.
+     * 
+     * @param dataWriter
+     *            the writer for data.
+     * @param separator
+     *            the separator for values.
+     * @param qualifier
+     *            the qualifier for values.
+     * @param columns
+     *            the columns for header or <code>null</code> to use fields of the first record.
+     * 
+     * @throws IOException
+     *             if header could not be written.
+     */
+    RecordWriter(Writer dataWriter, char separator, char qualifier, Collection<String> columns) throws IOException {
+        this.dataWriter = dataWriter;
+        this.formatter = new CsvFormatter(dataWriter, separator, qualifier);
+
+        if (columns != null) {
+            start(columns, true);
+        }
+    }
+
+    /**
+     * Writes record.
+     * 
+     * @param record
+     *            the record to be written.
+     * 
+     * @throws IOException
+     *             if record could not be written.
+     */
+    public void write(Record record) throws IOException {
+        if (!started) {
+            start(record.fields(), false);
+        }
+
+        if (record.header() != header) {
+            changeHeader(record.header());
+        }
+
+        for (int position : positions) {
+            record.formatAt(position, formatter);
+        }
+        formatter.endRow();
+    }
+
+    /**
+     * Writes record, see {@link #write(Record)}.
+     * 
+     * @param record
+     *            the record to be written.
+     * 
+     * @return this writer.
+     * 
+     * @throws IOException
+     *             if record could not be written.
+     */
+    public RecordWriter leftShift(Record record) throws IOException {
+        write(record);
+        return this;
+    }
+
+    /**
+     * Writes all records.
+     * 
+     * @param records
+     *            the records to be written.
+     * 
+     * @throws IOException
+     *             if records could not be written.
+     */
+    public void writeAll(Iterable<Record> records) throws IOException {
+        writeAll(records.iterator());
+    }
+
+    /**
+     * Writes all records.
+     * 
+     * @param records
+     *            the records to be written.
+     * 
+     * @throws IOException
+     *             if records could not be written.
+     */
+    public void writeAll(Iterator<Record> records) throws IOException {
+        while (records.hasNext()) {
+            write(records.next());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        formatter.flush();
+        dataWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            formatter.flush();
+        } finally {
+            dataWriter.close();
+        }
+    }
+
+    private void start(Collection<String> headerColumns, boolean projectedColumns) throws IOException {
+        columns = headerColumns.toArray(new String[headerColumns.size()]);
+        knownColumns = new HashSet<>(headerColumns);
+        projected = projectedColumns;
+        started = true;
+
+        for (String column : columns) {
+            formatter.value(column);
+        }
+        formatter.endRow();
+    }
+
+    private void changeHeader(Header recordHeader) {
+        if (!projected) {
+            for (String field : recordHeader.fields()) {
+                if (!knownColumns.contains(field)) {
+                    throw new IllegalArgumentException(format("Field %s not in header.", field));
+                }
+            }
+        }
+
+        header = recordHeader;
+        positions = new int[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            positions[i] = recordHeader.indexOf(columns[i]);
+        }
+    }
+
+}
@@ -19,9 +19,17 @@
  */
 package hrytsenko.csv;
 
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
 import groovy.lang.Closure;
+import groovy.transform.stc.ClosureParams;
+import groovy.transform.stc.SimpleType;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -51,7 +59,7 @@ public final class Records {
      * 
      * @return the distinct values of field.
      */
-    public static List<String> distinct(String field, Collection<Record> set) {
+    public static List<String> distinct(String field, Iterable<Record> set) {
         Set<String> values = new LinkedHashSet<>();
         for (Record record : set) {
             validateContainsKey(record, field);
@@ -62,6 +70,28 @@ public final class Records {
         return new ArrayList<>(values);
     }
 
+    /**
+     * Gets distinct values of field using several threads, see {@link ParallelIndex}.
+     * 
+     * <p>
+     * Only large lists with random access are processed by several threads, other sets are processed as usual.
+     * 
+     * @param field
+     *            the name of field.
+     * @param set
+     *            the set of records.
+     * @param threads
+     *            the number of threads.
+     * 
+     * @return the distinct values of field.
+     */
+    public static List<String> distinct(String field, Iterable<Record> set, int threads) {
+        if (!ParallelIndex.isApplicable(set, threads)) {
+            return distinct(field, set);
+        }
+        return new ParallelIndex(field, (List<Record>) set, threads).distinct();
+    }
+
     /**
      * Splits records into groups with the specified key.
      * 
@@ -72,7 +102,7 @@ public final class Records {
      * 
      * @return the grouped records.
      */
-    public static Map<String, List<Record>> group(String field, Collection<Record> set) {
+    public static Map<String, List<Record>> group(String field, Iterable<Record> set) {
         Map<String, List<Record>> groupedSet = new LinkedHashMap<>();
         for (Record record : set) {
             validateContainsKey(record, field);
@@ -89,6 +119,25 @@ public final class Records {
         return groupedSet;
     }
 
+    /**
+     * Splits records into groups using several threads, see {@link #distinct(String, Iterable, int)}.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param set
+     *            the set of records for grouping.
+     * @param threads
+     *            the number of threads.
+     * 
+     * @return the grouped records.
+     */
+    public static Map<String, List<Record>> group(String field, Iterable<Record> set, int threads) {
+        if (!ParallelIndex.isApplicable(set, threads)) {
+            return group(field, set);
+        }
+        return new ParallelIndex(field, (List<Record>) set, threads).group();
+    }
+
     /**
      * Get mapping of records with the specified unique key.
      * 
@@ -102,7 +151,7 @@ public final class Records {
      * 
      * @return the mapped records.
      */
-    public static Map<String, Record> map(String field, Collection<Record> set) {
+    public static Map<String, Record> map(String field, Iterable<Record> set) {
         Map<String, Record> mappedSet = new LinkedHashMap<>();
         for (Record record : set) {
             validateContainsKey(record, field);
@@ -113,6 +162,25 @@ public final class Records {
         return mappedSet;
     }
 
+    /**
+     * Get mapping of records using several threads, see {@link #distinct(String, Iterable, int)}.
+     * 
+     * @param field
+     *            the field to be used as unique key.
+     * @param set
+     *            the set of records for mapping.
+     * @param threads
+     *            the number of threads.
+     * 
+     * @return the mapped records.
+     */
+    public static Map<String, Record> map(String field, Iterable<Record> set, int threads) {
+        if (!ParallelIndex.isApplicable(set, threads)) {
+            return map(field, set);
+        }
+        return new ParallelIndex(field, (List<Record>) set, threads).map();
+    }
+
     /**
      * Merges records by key using closure.
      * 
@@ -127,7 +195,8 @@ public final class Records {
      * 
      * @return the resulting set.
      */
-    public static List<Record> merge(String field, Collection<Record> set, Collection<Record> otherSet,
+    public static List<Record> merge(String field, Iterable<Record> set, Iterable<Record> otherSet,
+            @ClosureParams(value = SimpleType.class, options = "hrytsenko.csv.Record,hrytsenko.csv.Record")
             Closure<Record> closure) {
         List<Record> resultSet = new ArrayList<>();
         Map<String, Record> mergedSet = map(field, otherSet);
@@ -155,7 +224,7 @@ public final class Records {
      * 
      * @return the resulting set.
      */
-    public static List<Record> merge(String field, Collection<Record> set, Collection<Record> otherSet) {
+    public static List<Record> merge(String field, Iterable<Record> set, Iterable<Record> otherSet) {
         return merge(field, set, otherSet, new Closure<Record>(Records.class) {
 
             private static final long serialVersionUID = 1L;
@@ -168,6 +237,381 @@ public final class Records {
         });
     }
 
+    /**
+     * Joins records with the same key, see {@link #join(String, Iterable, Iterable, String)}.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param set
+     *            the left set of records.
+     * @param otherSet
+     *            the right set of records.
+     * 
+     * @return the records, that have match.
+     */
+    public static List<Record> join(String field, Iterable<Record> set, Iterable<Record> otherSet) {
+        return join(field, set, otherSet, JoinType.INNER.name());
+    }
+
+    /**
+     * Joins records with the same key using hash table, see {@link HashJoin}.
+     * 
+     * <p>
+     * Supported types of join: <code>inner</code>, <code>left</code>, <code>right</code>, <code>full</code>,
+     * <code>semi</code> and <code>anti</code>, see {@link JoinType}. Each record is joined with all records, that have
+     * the same key. The numbers of matched and not matched records are logged.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param set
+     *            the left set of records.
+     * @param otherSet
+     *            the right set of records.
+     * @param type
+     *            the type of join.
+     * 
+     * @return the joined records.
+     */
+    public static List<Record> join(String field, Iterable<Record> set, Iterable<Record> otherSet, String type) {
+        return new HashJoin(field, JoinType.of(type)).join(set, otherSet);
+    }
+
+    /**
+     * Joins sorted records with the same key, see {@link #mergeJoin(String, Iterable, Iterable, String)}.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param set
+     *            the left set of records, sorted by key.
+     * @param otherSet
+     *            the right set of records, sorted by key.
+     * 
+     * @return the stream of records, that have match.
+     */
+    public static RecordStream mergeJoin(String field, Iterable<Record> set, Iterable<Record> otherSet) {
+        return mergeJoin(field, set, otherSet, JoinType.INNER.name());
+    }
+
+    /**
+     * Joins sorted records with the same key in one pass, see {@link MergeJoin}.
+     * 
+     * <p>
+     * Both sets should be sorted by key in natural order of strings, so they can be streams of any size. Records are
+     * joined on demand, and only the records of the right set with the current key are kept in memory.
+     * 
+     * @param field
+     *            the field to be used as key.
+     * @param set
+     *            the left set of records, sorted by key.
+     * @param otherSet
+     *            the right set of records, sorted by key.
+     * @param type
+     *            the type of join, see {@link #join(String, Iterable, Iterable, String)}.
+     * 
+     * @return the stream of joined records.
+     */
+    public static RecordStream mergeJoin(String field, Iterable<Record> set, Iterable<Record> otherSet, String type) {
+        MergeJoin join = new MergeJoin(field, JoinType.of(type), set, otherSet);
+        return new RecordStream(join, join);
+    }
+
+    /**
+     * Sorts records using a quarter of maximum heap, see {@link #sort(List, Iterable, long)}.
+     * 
+     * @param fields
+     *            the fields to sort by.
+     * @param set
+     *            the records to be sorted.
+     * 
+     * @return the stream of sorted records.
+     * 
+     * @throws IOException
+     *             if records could not be spilled into temporary files.
+     */
+    public static RecordStream sort(List<String> fields, Iterable<Record> set) throws IOException {
+        return sort(fields, set, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * Sorts records, that may not fit into memory, see {@link ExternalSort}.
+     * 
+     * <p>
+     * Each field is given as <code>field[:type][:desc]</code>, where type is <code>long</code>, <code>double</code> or
+     * <code>date</code>. For example, <code>['exchange', 'price:double:desc']</code>. Records, that do not fit into
+     * given memory, are sorted in parts by several threads and spilled into temporary files. Sort is stable.
+     * 
+     * @param fields
+     *            the fields to sort by.
+     * @param set
+     *            the records to be sorted.
+     * @param memory
+     *            the memory for records in bytes.
+     * 
+     * @return the stream of sorted records.
+     * 
+     * @throws IOException
+     *             if records could not be spilled into temporary files.
+     */
+    public static RecordStream sort(List<String> fields, Iterable<Record> set, long memory) throws IOException {
+        return new ExternalSort(new SortKey(fields), memory, Threads.defaultThreads()).sort(set);
+    }
+
+    /**
+     * Aggregates groups of records without keeping records in memory.
+     * 
+     * <p>
+     * Supported named arguments:
+     * <ul>
+     * <li><code>records</code> - the records to be aggregated: collection, stream or iterator.</li>
+     * <li><code>by</code> - the field or list of fields to group records by, default: all records in one group.</li>
+     * </ul>
+     * 
+     * <p>
+     * Result contains record for each group in order of their first records. Each record contains the fields used to
+     * group records, and then the results of functions, see {@link Aggregate#named(String)}. Records without field
+     * used to group them are grouped with records, where this field is empty.
+     * 
+     * @param args
+     *            the named arguments.
+     * @param aggregates
+     *            the aggregate functions.
+     * 
+     * @return the records for groups.
+     */
+    public static List<Record> aggregate(Map<String, ?> args, Aggregate... aggregates) {
+        List<String> by = getBy(args);
+        String[] fields = new String[by.size() + aggregates.length];
+        for (int i = 0; i < by.size(); ++i) {
+            fields[i] = by.get(i);
+        }
+        for (int i = 0; i < aggregates.length; ++i) {
+            fields[by.size() + i] = aggregates[i].name();
+        }
+        if (new LinkedHashSet<>(Arrays.asList(fields)).size() != fields.length) {
+            throw new IllegalArgumentException("Fields of result are not unique.");
+        }
+
+        Map<List<String>, Aggregate.Accumulator[]> groups = new LinkedHashMap<>();
+        for (Record record : IO.getRecords(args.get("records"))) {
+            String[] key = new String[by.size()];
+            for (int i = 0; i < key.length; ++i) {
+                String value = record.getAt(by.get(i));
+                key[i] = value != null ? value : EMPTY;
+            }
+
+            List<String> groupKey = Arrays.asList(key);
+            Aggregate.Accumulator[] accumulators = groups.get(groupKey);
+            if (accumulators == null) {
+                accumulators = new Aggregate.Accumulator[aggregates.length];
+                for (int i = 0; i < aggregates.length; ++i) {
+                    accumulators[i] = aggregates[i].newAccumulator();
+                }
+                groups.put(groupKey, accumulators);
+            }
+            for (Aggregate.Accumulator accumulator : accumulators) {
+                accumulator.add(record);
+            }
+        }
+
+        Header header = new Header(fields);
+        List<Record> result = new ArrayList<>(groups.size());
+        for (Map.Entry<List<String>, Aggregate.Accumulator[]> group : groups.entrySet()) {
+            String[] values = new String[fields.length];
+            for (int i = 0; i < by.size(); ++i) {
+                values[i] = group.getKey().get(i);
+            }
+            for (int i = 0; i < aggregates.length; ++i) {
+                values[by.size() + i] = group.getValue()[i].result();
+            }
+            result.add(new Record(header, values));
+        }
+        return result;
+    }
+
+    /**
+     * Counts records in group, the result is named <code>count</code>.
+     * 
+     * @return the aggregate function.
+     */
+    public static Aggregate count() {
+        return new Aggregate(Aggregate.Function.COUNT, null);
+    }
+
+    /**
+     * Counts non-empty values of field in group.
+     * 
+     * @param field
+     *            the name of field.
+     * 
+     * @return the aggregate function.
+     */
+    public static Aggregate count(String field) {
+        return new Aggregate(Aggregate.Function.COUNT, field);
+    }
+
+    /**
+     * Sums numeric values of field in group. Sum of integers is integer.
+     * 
+     * @param field
+     *            the name of field.
+     * 
+     * @return the aggregate function.
+     */
+    public static Aggregate sum(String field) {
+        return new Aggregate(Aggregate.Function.SUM, field);
+    }
+
+    /**
+     * Finds the least value of field in group.
+     * 
+     * @param field
+     *            the field given as <code>field[:type]</code>, where type is <code>long</code>, <code>double</code> or
+     *            <code>date</code>; values of field without type are compared as strings.
+     * 
+     * @return the aggregate function.
+     */
+    public static Aggregate min(String field) {
+        return new Aggregate(Aggregate.Function.MIN, field);
+    }
+
+    /**
+     * Finds the greatest value of field in group.
+     * 
+     * @param field
+     *            the field given as <code>field[:type]</code>, see {@link #min(String)}.
+     * 
+     * @return the aggregate function.
+     */
+    public static Aggregate max(String field) {
+        return new Aggregate(Aggregate.Function.MAX, field);
+    }
+
+    /**
+     * Calculates the average of numeric values of field in group.
+     * 
+     * @param field
+     *            the name of field.
+     * 
+     * @return the aggregate function.
+     */
+    public static Aggregate avg(String field) {
+        return new Aggregate(Aggregate.Function.AVG, field);
+    }
+
+    /**
+     * Renames fields in all records.
+     * 
+     * <p>
+     * Records, that share the same header, are renamed by switching to the same renamed header. If new name is already
+     * used by other field, then this field is removed, see {@link Record#rename(String, String)}.
+     * 
+     * @param fields
+     *            the old names of fields and their new names.
+     * @param set
+     *            the set of records.
+     */
+    public static void renameAll(Map<String, String> fields, Iterable<Record> set) {
+        Header header = null;
+        Header renamedHeader = null;
+        for (Record record : set) {
+            if (record.header() != header) {
+                header = record.header();
+                renamedHeader = renamed(header, fields);
+            }
+
+            if (renamedHeader != null) {
+                record.rename(renamedHeader);
+            } else {
+                for (Map.Entry<String, String> field : fields.entrySet()) {
+                    record.rename(field.getKey(), field.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Retains only given fields in all records.
+     * 
+     * @param fields
+     *            the fields to be retained.
+     * @param set
+     *            the set of records.
+     */
+    public static void retainAll(Collection<String> fields, Iterable<Record> set) {
+        Header header = null;
+        BitSet retained = null;
+        for (Record record : set) {
+            if (record.header() != header) {
+                header = record.header();
+                retained = new BitSet();
+                for (String field : fields) {
+                    retained.set(position(header, field));
+                }
+            }
+
+            record.retain(retained);
+        }
+    }
+
+    /**
+     * Removes given fields from all records.
+     * 
+     * @param fields
+     *            the fields to be removed.
+     * @param set
+     *            the set of records.
+     */
+    public static void removeAll(Collection<String> fields, Iterable<Record> set) {
+        Header header = null;
+        BitSet retained = null;
+        for (Record record : set) {
+            if (record.header() != header) {
+                header = record.header();
+                retained = new BitSet();
+                retained.set(0, header.size());
+                for (String field : fields) {
+                    retained.clear(position(header, field));
+                }
+            }
+
+            record.retain(retained);
+        }
+    }
+
+    /**
+     * Adds field with given value to all records, that have no such field.
+     * 
+     * <p>
+     * The value is the string representation of given object, or {@link org.apache.commons.lang3.StringUtils#EMPTY} if
+     * it is <code>null</code>.
+     * 
+     * @param field
+     *            the name of field.
+     * @param value
+     *            the value for field.
+     * @param set
+     *            the set of records.
+     */
+    public static void addColumn(String field, Object value, Iterable<Record> set) {
+        if (isEmpty(field)) {
+            throw new IllegalArgumentException("Empty field.");
+        }
+
+        String addedValue = value == null ? EMPTY : value.toString();
+        Header header = null;
+        Header addedHeader = null;
+        for (Record record : set) {
+            if (record.header() != header) {
+                header = record.header();
+                addedHeader = header.indexOf(field) < 0 ? header.add(field) : null;
+            }
+
+            if (addedHeader != null) {
+                record.add(addedHeader, addedValue);
+            }
+        }
+    }
+
     /**
      * Creates record with given values.
      * 
@@ -198,6 +642,66 @@ public final class Records {
         return record;
     }
 
+    /**
+     * Copies records into table, that keeps them outside of heap, see {@link RecordTable}.
+     * 
+     * @param set
+     *            the set of records.
+     * 
+     * @return the table with records.
+     * 
+     * @throws IOException
+     *             if table could not be created.
+     */
+    public static RecordTable table(Iterable<Record> set) throws IOException {
+        return new RecordTable(set);
+    }
+
+    /**
+     * Renames fields of header.
+     * 
+     * @return the renamed header or <code>null</code> if new name is already used by other field.
+     */
+    private static Header renamed(Header header, Map<String, String> fields) {
+        Header renamedHeader = header;
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            int pos = position(renamedHeader, field.getKey());
+            if (isEmpty(field.getValue())) {
+                throw new IllegalArgumentException("Empty field.");
+            }
+
+            int otherPos = renamedHeader.indexOf(field.getValue());
+            if (otherPos >= 0 && otherPos != pos) {
+                return null;
+            }
+            renamedHeader = renamedHeader.rename(pos, field.getValue());
+        }
+        return renamedHeader;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> getBy(Map<String, ?> args) {
+        Object by = args.get("by");
+        if (by == null) {
+            return new ArrayList<>();
+        }
+        if (by instanceof CharSequence) {
+            return Arrays.asList(by.toString());
+        }
+        if (by instanceof List) {
+            return (List<String>) by;
+        }
+        throw new IllegalArgumentException("Use field or list of fields for by.");
+    }
+
+    private static int position(Header header, String field) {
+        int pos = header.indexOf(field);
+        if (pos < 0) {
+            throw new IllegalArgumentException(format("Field %s not found.", field));
+        }
+        return pos;
+    }
+
     private static void validateContainsKey(Record record, String field) {
         if (!record.contains(field)) {
             throw new IllegalArgumentException("One or more record has no key.");
@@ -0,0 +1,370 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.IO.getCharset;
+import static hrytsenko.csv.IO.getColumns;
+import static hrytsenko.csv.IO.getQualifier;
+import static hrytsenko.csv.IO.getSeparator;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Binary columnar snapshot of CSV file, that is saved next to the file.
+ * 
+ * <p>
+ * Snapshot contains the parsed values of all records, grouped by columns and encoded in UTF-8. It is valid only for
+ * the same size and modification time of file and for the same options of parsing.
+ * 
+ * <p>
+ * Format of snapshot: magic number, version, size and modification time of file, options, columns and number of rows.
+ * Then, for each column: the size of data, lengths of values (<code>-1</code> for absent ones) and their data. Columns
+ * are mapped into memory, so data of column is limited to 2 GB and number of rows is limited to 536 millions. Files,
+ * that exceed these limits, are not saved into snapshot.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x43535653;
+    private static final int VERSION = 1;
+
+    private static final String EXTENSION = ".snapshot";
+
+    private static final int MAX_ROWS = Integer.MAX_VALUE / 4;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Returns the path to snapshot of file.
+     * 
+     * @param path
+     *            the path to file.
+     * 
+     * @return the path to snapshot.
+     */
+    static Path getSnapshotPath(Path path) {
+        return Paths.get(path.toString() + EXTENSION);
+    }
+
+    /**
+     * Reads records from snapshot of file.
+     * 
+     * <p>
+     * Snapshot is mapped into memory, and records are created as they are iterated. Structure of snapshot is validated
+     * before records are read.
+     * 
+     * @param path
+     *            the path to file.
+     * @param args
+     *            the named arguments {@link IO}.
+     * 
+     * @return the iterator over records or <code>null</code> if there is no valid snapshot.
+     * 
+     * @throws IOException
+     *             if snapshot could not be read or it is corrupted.
+     */
+    static Iterator<Record> read(Path path, Map<String, ?> args) throws IOException {
+        Path snapshotPath = getSnapshotPath(path);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            DataInputStream header = new DataInputStream(Channels.newInputStream(channel));
+            if (header.readInt() != MAGIC || header.readInt() != VERSION
+                    || header.readLong() != attributes.size()
+                    || header.readLong() != attributes.lastModifiedTime().toMillis()
+                    || !header.readUTF().equals(getOptions(args))) {
+                return null;
+            }
+
+            int count = header.readInt();
+            validate(count >= 0 && count <= channel.size());
+            String[] columns = new String[count];
+            for (int i = 0; i < columns.length; ++i) {
+                columns[i] = header.readUTF();
+            }
+            int rows = header.readInt();
+            validate(rows >= 0 && rows <= MAX_ROWS);
+
+            long position = channel.position();
+            MappedByteBuffer[] lengths = new MappedByteBuffer[columns.length];
+            MappedByteBuffer[] values = new MappedByteBuffer[columns.length];
+            for (int i = 0; i < columns.length; ++i) {
+                validate(position + 8 <= channel.size());
+                channel.position(position);
+                long size = header.readLong();
+                position += 8;
+                validate(size >= 0 && size <= Integer.MAX_VALUE && position + 4L * rows + size <= channel.size());
+
+                lengths[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * rows);
+                position += 4L * rows;
+                values[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                position += size;
+                validateLengths(lengths[i], rows, size);
+            }
+            validate(position == channel.size());
+
+            return new Rows(columns, rows, lengths, values, args);
+        } catch (NoSuchFileException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes records into snapshot of file.
+     * 
+     * <p>
+     * Snapshot is written into temporary file, that replaces the previous snapshot.
+     * 
+     * @param path
+     *            the path to file.
+     * @param args
+     *            the named arguments {@link IO}.
+     * @param records
+     *            the records loaded from file.
+     * 
+     * @throws IOException
+     *             if snapshot could not be written.
+     */
+    static void write(Path path, Map<String, ?> args, List<Record> records) throws IOException {
+        Path snapshotPath = getSnapshotPath(path);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        Set<String> columns = new LinkedHashSet<>();
+        for (Record record : records) {
+            columns.addAll(record.fields());
+        }
+
+        if (records.size() > MAX_ROWS) {
+            throw new IOException("Too many rows for snapshot.");
+        }
+
+        Path tempPath = Files.createTempFile(snapshotPath.toAbsolutePath().getParent(), null, EXTENSION);
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                DataOutputStream data = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeLong(attributes.size());
+                data.writeLong(attributes.lastModifiedTime().toMillis());
+                data.writeUTF(getOptions(args));
+
+                data.writeInt(columns.size());
+                for (String column : columns) {
+                    data.writeUTF(column);
+                }
+                data.writeInt(records.size());
+                data.flush();
+
+                long position = channel.position();
+                for (String column : columns) {
+                    position = writeColumn(channel, position, column, records);
+                }
+            }
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Writes column at given position of file. Lengths and data of values are buffered separately, and buffers are
+     * written into their parts of column, when they are filled.
+     * 
+     * @return the position after column.
+     */
+    private static long writeColumn(FileChannel channel, long position, String column, List<Record> records)
+            throws IOException {
+        long lengthsPosition = position + 8;
+        long valuesStart = lengthsPosition + 4L * records.size();
+        long valuesPosition = valuesStart;
+
+        ByteBuffer lengths = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer values = ByteBuffer.allocate(BUFFER_SIZE);
+        for (Record record : records) {
+            if (lengths.remaining() < 4) {
+                lengthsPosition = flush(channel, lengths, lengthsPosition);
+            }
+
+            String value = record.getAt(column);
+            if (value == null) {
+                lengths.putInt(-1);
+                continue;
+            }
+
+            byte[] encodedValue = value.getBytes(UTF_8);
+            lengths.putInt(encodedValue.length);
+            if (valuesPosition + values.position() + encodedValue.length - valuesStart > Integer.MAX_VALUE) {
+                throw new IOException(format("Column %s is too large for snapshot.", column));
+            }
+            if (encodedValue.length > values.remaining()) {
+                valuesPosition = flush(channel, values, valuesPosition);
+            }
+            if (encodedValue.length > values.remaining()) {
+                valuesPosition = writeFully(channel, ByteBuffer.wrap(encodedValue), valuesPosition);
+            } else {
+                values.put(encodedValue);
+            }
+        }
+        flush(channel, lengths, lengthsPosition);
+        valuesPosition = flush(channel, values, valuesPosition);
+
+        ByteBuffer size = ByteBuffer.allocate(8);
+        size.putLong(valuesPosition - valuesStart).flip();
+        writeFully(channel, size, position);
+        return valuesPosition;
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        long next = writeFully(channel, buffer, position);
+        buffer.clear();
+        return next;
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long next = position;
+        while (buffer.hasRemaining()) {
+            next += channel.write(buffer, next);
+        }
+        return next;
+    }
+
+    private static void validateLengths(ByteBuffer lengths, int rows, long size) throws IOException {
+        long total = 0;
+        for (int i = 0; i < rows; ++i) {
+            int length = lengths.getInt(4 * i);
+            validate(length >= -1);
+            total += Math.max(length, 0);
+        }
+        validate(total == size);
+    }
+
+    private static void validate(boolean valid) throws IOException {
+        if (!valid) {
+            throw new IOException("Snapshot is corrupted.");
+        }
+    }
+
+    /**
+     * Creates records from mapped columns of snapshot.
+     */
+    private static final class Rows implements Iterator<Record> {
+
+        private final String[] columns;
+        private final int rows;
+        private final MappedByteBuffer[] lengths;
+        private final MappedByteBuffer[] values;
+
+        private final Header fullHeader;
+        private final Dictionary[] dictionaries;
+
+        private int row;
+        private byte[] buffer = new byte[256];
+
+        private Rows(String[] columns, int rows, MappedByteBuffer[] lengths, MappedByteBuffer[] values,
+                Map<String, ?> args) {
+            this.columns = columns;
+            this.rows = rows;
+            this.lengths = lengths;
+            this.values = values;
+
+            fullHeader = new Header(columns, FieldType.forFields(columns, args));
+            dictionaries = Dictionary.forFields(columns, args);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return row < rows;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ++row;
+
+            String[] rowValues = new String[columns.length];
+            BitSet present = new BitSet(columns.length);
+            for (int i = 0; i < columns.length; ++i) {
+                int length = lengths[i].getInt();
+                if (length < 0) {
+                    continue;
+                }
+                if (length > buffer.length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                values[i].get(buffer, 0, length);
+                rowValues[i] = new String(buffer, 0, length, UTF_8);
+                if (dictionaries[i] != null) {
+                    rowValues[i] = dictionaries[i].intern(rowValues[i]);
+                }
+                present.set(i);
+            }
+            if (present.cardinality() == columns.length) {
+                return new Record(fullHeader, rowValues);
+            }
+
+            String[] presentValues = new String[present.cardinality()];
+            for (int i = present.nextSetBit(0), j = 0; i >= 0; i = present.nextSetBit(i + 1), ++j) {
+                presentValues[j] = rowValues[i];
+            }
+            return new Record(fullHeader.retain(present), presentValues);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static String getOptions(Map<String, ?> args) {
+        return getCharset(args).name() + getSeparator(args) + getQualifier(args) + getColumns(args);
+    }
+
+}
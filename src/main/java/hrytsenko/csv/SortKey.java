@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.lang.String.format;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Order of records by values of one or more fields.
+ * 
+ * <p>
+ * Each field is given as <code>field[:type][:desc]</code>, where type is <code>long</code>, <code>double</code> or
+ * <code>date</code>. Fields without type are compared as strings. Absent and empty values of typed fields precede all
+ * other values, as well as absent values of other fields.
+ * 
+ * @author hrytsenko.anton
+ */
+final class SortKey implements Comparator<SortKey.Entry> {
+
+    private final String[] fields;
+    private final FieldType[] types;
+    private final boolean[] descending;
+
+    /**
+     * Creates order for fields.
+     * 
+     * @param specs
+     *            the fields with optional type and direction.
+     */
+    SortKey(List<String> specs) {
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("No fields to sort by.");
+        }
+
+        fields = new String[specs.size()];
+        types = new FieldType[specs.size()];
+        descending = new boolean[specs.size()];
+        for (int i = 0; i < fields.length; ++i) {
+            String[] parts = specs.get(i).split(":");
+            fields[i] = parts[0];
+            for (int j = 1; j < parts.length; ++j) {
+                if (parts[j].equalsIgnoreCase("desc")) {
+                    descending[i] = true;
+                } else if (!parts[j].equalsIgnoreCase("asc")) {
+                    types[i] = FieldType.of(parts[j]);
+                }
+            }
+            if (fields[i].isEmpty()) {
+                throw new IllegalArgumentException(format("Invalid field %s.", specs.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Extracts key of record, so values are parsed only once.
+     * 
+     * @param record
+     *            the record.
+     * 
+     * @return the record and its key.
+     */
+    Entry entry(Record record) {
+        String[] values = new String[fields.length];
+        long[] numbers = new long[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            String value = record.getAt(fields[i]);
+            if (types[i] == null || value == null) {
+                values[i] = value;
+            } else if (!value.isEmpty()) {
+                values[i] = value;
+                numbers[i] = toOrdered(types[i], types[i].parse(value));
+            }
+        }
+        return new Entry(record, values, numbers);
+    }
+
+    @Override
+    public int compare(Entry entry, Entry other) {
+        for (int i = 0; i < fields.length; ++i) {
+            int order = compareAt(i, entry, other);
+            if (order != 0) {
+                return descending[i] ? -order : order;
+            }
+        }
+        return 0;
+    }
+
+    private int compareAt(int i, Entry entry, Entry other) {
+        String value = entry.values[i];
+        String otherValue = other.values[i];
+        if (value == null || otherValue == null) {
+            return value == null ? (otherValue == null ? 0 : -1) : 1;
+        }
+        if (types[i] == null) {
+            return value.compareTo(otherValue);
+        }
+        return Long.compare(entry.numbers[i], other.numbers[i]);
+    }
+
+    /**
+     * Converts bits of floating-point number, so they have the same order as numbers.
+     */
+    private static long toOrdered(FieldType type, long parsed) {
+        if (type != FieldType.DOUBLE) {
+            return parsed;
+        }
+        return parsed ^ ((parsed >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Record with its key.
+     */
+    static final class Entry {
+
+        private final Record record;
+        private final String[] values;
+        private final long[] numbers;
+
+        private Entry(Record record, String[] values, long[] numbers) {
+            this.record = record;
+            this.values = values;
+            this.numbers = numbers;
+        }
+
+        Record record() {
+            return record;
+        }
+
+    }
+
+}
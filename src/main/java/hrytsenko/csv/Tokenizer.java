@@ -0,0 +1,326 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.util.Arrays.copyOf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Splits CSV data into rows and values.
+ * 
+ * <p>
+ * Values of the current row are kept in the internal buffer, already unqualified. So string for value is created only
+ * when it is requested, and values, that are not used, cost nothing except copying of their characters.
+ * 
+ * <p>
+ * Rows are separated by LF, CR or CRLF. Empty lines are skipped.
+ * 
+ * @author hrytsenko.anton
+ */
+final class Tokenizer implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char separator;
+    private final char qualifier;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+
+    private char[] chars = new char[256];
+    private int length;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    private long rows;
+
+    private final Value value = new Value();
+
+    /**
+     * Creates tokenizer for stream of characters.
+     * 
+     * @param reader
+     *            the stream of characters.
+     * @param separator
+     *            the separator for values.
+     * @param qualifier
+     *            the qualifier for values.
+     */
+    Tokenizer(Reader reader, char separator, char qualifier) {
+        this.reader = reader;
+        this.separator = separator;
+        this.qualifier = qualifier;
+
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Creates tokenizer for characters in buffer.
+     * 
+     * @param data
+     *            the buffer with characters, that is backed by array.
+     * @param separator
+     *            the separator for values.
+     * @param qualifier
+     *            the qualifier for values.
+     */
+    Tokenizer(CharBuffer data, char separator, char qualifier) {
+        this.reader = null;
+        this.separator = separator;
+        this.qualifier = qualifier;
+
+        this.buffer = data.array();
+        this.position = data.arrayOffset() + data.position();
+        this.limit = data.arrayOffset() + data.limit();
+    }
+
+    /**
+     * Reads the next row.
+     * 
+     * @return <code>true</code> if row was read and <code>false</code> if there are no more rows.
+     * 
+     * @throws IOException
+     *             if data could not be read.
+     */
+    boolean next() throws IOException {
+        int next;
+        do {
+            next = read();
+            if (next < 0) {
+                return false;
+            }
+        } while (next == '\n' || next == '\r');
+
+        length = 0;
+        count = 0;
+        ++rows;
+
+        int start = 0;
+        while (true) {
+            if (next == qualifier && length == start) {
+                next = readQualified();
+                continue;
+            }
+
+            if (next < 0 || next == '\n' || next == '\r') {
+                addValue(start);
+                return true;
+            }
+
+            if (next == separator) {
+                addValue(start);
+                start = length;
+            } else {
+                addChar((char) next);
+            }
+            next = read();
+        }
+    }
+
+    /**
+     * Returns the number of rows read.
+     * 
+     * @return the number of rows.
+     */
+    long rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of values in the current row.
+     * 
+     * @return the number of values.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Returns value from the current row.
+     * 
+     * @param i
+     *            the index of value.
+     * 
+     * @return the value.
+     */
+    String get(int i) {
+        return new String(chars, starts[i], ends[i] - starts[i]);
+    }
+
+    /**
+     * Returns value from the current row without creating string.
+     * 
+     * <p>
+     * The same sequence is reused for all values, so it is valid only until the next call.
+     * 
+     * @param i
+     *            the index of value.
+     * 
+     * @return the value.
+     */
+    CharSequence value(int i) {
+        value.start = starts[i];
+        value.end = ends[i];
+        return value;
+    }
+
+    /**
+     * Returns the start of value in characters of the current row.
+     * 
+     * @param i
+     *            the index of value.
+     * 
+     * @return the start of value.
+     */
+    int start(int i) {
+        return starts[i];
+    }
+
+    /**
+     * Returns the end of value in characters of the current row.
+     * 
+     * @param i
+     *            the index of value.
+     * 
+     * @return the end of value.
+     */
+    int end(int i) {
+        return ends[i];
+    }
+
+    /**
+     * Copies characters of all values of the current row.
+     * 
+     * @return the characters of row.
+     */
+    char[] chars() {
+        return copyOf(chars, length);
+    }
+
+    /**
+     * Returns all values from the current row.
+     * 
+     * @return the values.
+     */
+    String[] values() {
+        String[] values = new String[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads qualified part of value. Qualifiers are escaped by doubling.
+     * 
+     * @return the next character after qualified part.
+     */
+    private int readQualified() throws IOException {
+        while (true) {
+            int next = read();
+            if (next < 0) {
+                return next;
+            }
+            if (next == qualifier) {
+                next = read();
+                if (next != qualifier) {
+                    return next;
+                }
+            }
+            addChar((char) next);
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            if (reader == null) {
+                return -1;
+            }
+
+            int read = reader.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                return -1;
+            }
+            position = 0;
+            limit = read;
+        }
+        return buffer[position++];
+    }
+
+    private void addChar(char next) {
+        if (length == chars.length) {
+            chars = copyOf(chars, length * 2);
+        }
+        chars[length++] = next;
+    }
+
+    private void addValue(int start) {
+        if (count == starts.length) {
+            starts = copyOf(starts, count * 2);
+            ends = copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = length;
+        ++count;
+    }
+
+    private final class Value implements CharSequence {
+
+        private int start;
+        private int end;
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new String(chars, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+
+    }
+
+}
@@ -1,19 +1,31 @@
-Collection.metaClass.distinct = { field ->
+Iterable.metaClass.distinct = { field ->
     distinct(field, delegate)
 }
 
-Collection.metaClass.group = { field ->
+Iterable.metaClass.distinct = { field, int threads ->
+    distinct(field, delegate, threads)
+}
+
+Iterable.metaClass.group = { field ->
     group(field, delegate)
 }
 
-Collection.metaClass.map = { field ->
+Iterable.metaClass.group = { field, int threads ->
+    group(field, delegate, threads)
+}
+
+Iterable.metaClass.map = { field ->
     map(field, delegate)
 }
 
-Collection.metaClass.merge = { field, other ->
+Iterable.metaClass.map = { field, int threads ->
+    map(field, delegate, threads)
+}
+
+Iterable.metaClass.merge = { field, other ->
     merge(field, delegate, other)
 }
 
-Collection.metaClass.merge = { field, other, closure ->
+Iterable.metaClass.merge = { field, other, closure ->
     merge(field, delegate, other, closure)
 }
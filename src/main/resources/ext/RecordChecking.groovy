@@ -0,0 +1,145 @@
+/*
+ * Type checking extension for statically compiled scripts.
+ *
+ * Access to fields of records by name of property is turned into direct calls of getAt and putAt.
+ * Compound assignment to field, such as record.name += 'x', is turned into putAt of the result of operation on getAt.
+ * Operations distinct, group, map and merge for collections of records are turned into calls of Records.
+ * Variables from binding of script, such as args, are accessed dynamically.
+ */
+import static org.codehaus.groovy.ast.ClassHelper.OBJECT_TYPE
+import static org.codehaus.groovy.ast.ClassHelper.STRING_TYPE
+import static org.codehaus.groovy.ast.tools.GeneralUtils.classX
+import static org.codehaus.groovy.ast.tools.GeneralUtils.constX
+import hrytsenko.csv.Record
+import hrytsenko.csv.Records
+
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer
+import org.codehaus.groovy.ast.ClassNode
+import org.codehaus.groovy.ast.MethodNode
+import org.codehaus.groovy.ast.expr.ArgumentListExpression
+import org.codehaus.groovy.ast.expr.AttributeExpression
+import org.codehaus.groovy.ast.expr.BinaryExpression
+import org.codehaus.groovy.ast.expr.ClosureExpression
+import org.codehaus.groovy.ast.expr.Expression
+import org.codehaus.groovy.ast.expr.MethodCallExpression
+import org.codehaus.groovy.ast.expr.PropertyExpression
+import org.codehaus.groovy.ast.expr.VariableExpression
+import org.codehaus.groovy.control.SourceUnit
+import org.codehaus.groovy.syntax.Token
+import org.codehaus.groovy.syntax.Types
+
+ClassNode recordType = classNodeFor(Record)
+MethodNode getAt = recordType.getMethods('getAt').find { it.parameters[0].type == STRING_TYPE }
+MethodNode putAt = recordType.getMethods('putAt').find { it.parameters[0].type == STRING_TYPE }
+
+ClassNode iterableType = classNodeFor(Iterable)
+ClassNode recordsType = classNodeFor(Records)
+Map<String, MethodNode> collectionMethods = [:]
+recordsType.methods.findAll { it.static && it.public && it.name in ['distinct', 'group', 'map', 'merge'] }.each {
+    collectionMethods["${it.name}/${it.parameters.length - 1}".toString()] = it
+}
+
+def collectionMethod = { ClassNode receiver, String name, int arguments ->
+    implementsInterfaceOrIsSubclassOf(receiver, iterableType) ? collectionMethods["$name/$arguments".toString()] : null
+}
+
+def isRecordProperty = { Expression expression ->
+    expression instanceof PropertyExpression && !(expression instanceof AttributeExpression) &&
+            expression.propertyAsString != null && !expression.safe && !expression.spreadSafe &&
+            implementsInterfaceOrIsSubclassOf(getType(expression.objectExpression), recordType)
+}
+
+Map<Integer, Integer> compoundOperations = [
+        (Types.PLUS_EQUAL): Types.PLUS, (Types.MINUS_EQUAL): Types.MINUS,
+        (Types.MULTIPLY_EQUAL): Types.MULTIPLY, (Types.DIVIDE_EQUAL): Types.DIVIDE,
+        (Types.INTDIV_EQUAL): Types.INTDIV, (Types.MOD_EQUAL): Types.MOD, (Types.POWER_EQUAL): Types.POWER,
+        (Types.LEFT_SHIFT_EQUAL): Types.LEFT_SHIFT, (Types.RIGHT_SHIFT_EQUAL): Types.RIGHT_SHIFT,
+        (Types.RIGHT_SHIFT_UNSIGNED_EQUAL): Types.RIGHT_SHIFT_UNSIGNED,
+        (Types.BITWISE_AND_EQUAL): Types.BITWISE_AND, (Types.BITWISE_OR_EQUAL): Types.BITWISE_OR,
+        (Types.BITWISE_XOR_EQUAL): Types.BITWISE_XOR]
+
+def directCall = { Expression receiver, MethodNode target, Expression... arguments ->
+    def call = new MethodCallExpression(receiver, target.name, new ArgumentListExpression(arguments))
+    call.implicitThis = false
+    call.methodTarget = target
+    call.sourcePosition = receiver
+    storeType(call, target.returnType)
+    call
+}
+
+ClassNode argsType = parameterizedType(classNodeFor(List), STRING_TYPE)
+
+unresolvedVariable { VariableExpression variable ->
+    makeDynamic(variable, variable.name == 'args' ? argsType : OBJECT_TYPE)
+}
+
+unresolvedProperty { PropertyExpression expression ->
+    if (isRecordProperty(expression)) {
+        storeType(expression, STRING_TYPE)
+        handled = true
+    }
+}
+
+methodNotFound { ClassNode receiver, String name, ArgumentListExpression arguments, ClassNode[] types, call ->
+    MethodNode target = collectionMethod(receiver, name, types.length)
+    target != null ? newMethod(name, target.returnType) : null
+}
+
+afterVisitMethod { MethodNode method ->
+    def transformer = new ClassCodeExpressionTransformer() {
+
+        protected SourceUnit getSourceUnit() {
+            null
+        }
+
+        Expression transform(Expression expression) {
+            if (expression instanceof ClosureExpression) {
+                expression.code.visit(this)
+                return expression
+            }
+
+            if (expression instanceof BinaryExpression && expression.operation.type == Types.ASSIGN
+                    && isRecordProperty(expression.leftExpression)) {
+                PropertyExpression property = expression.leftExpression
+                return directCall(transform(property.objectExpression), putAt, constX(property.propertyAsString),
+                        transform(expression.rightExpression))
+            }
+
+            if (expression instanceof BinaryExpression && compoundOperations.containsKey(expression.operation.type)
+                    && isRecordProperty(expression.leftExpression)) {
+                PropertyExpression property = expression.leftExpression
+                if (!(property.objectExpression instanceof VariableExpression)) {
+                    addStaticTypeError('Compound assignment to field requires record in variable.', expression)
+                    return expression
+                }
+                Expression field = constX(property.propertyAsString)
+                Token operation = Token.newSymbol(compoundOperations[expression.operation.type],
+                        expression.operation.startLine, expression.operation.startColumn)
+                def value = new BinaryExpression(directCall(property.objectExpression, getAt, field), operation,
+                        transform(expression.rightExpression))
+                value.sourcePosition = expression
+                value.copyNodeMetaData(expression)
+                return directCall(property.objectExpression, putAt, field, value)
+            }
+
+            if (isRecordProperty(expression)) {
+                return directCall(transform(expression.objectExpression), getAt, constX(expression.propertyAsString))
+            }
+
+            if (expression instanceof MethodCallExpression && !expression.implicitThis
+                    && expression.arguments instanceof ArgumentListExpression) {
+                List<Expression> arguments = expression.arguments.expressions
+                MethodNode target = collectionMethod(getType(expression.objectExpression), expression.methodAsString,
+                        arguments.size())
+                if (target != null) {
+                    List<Expression> staticArguments = [arguments[0], expression.objectExpression] + arguments.drop(1)
+                    return directCall(classX(recordsType), target, *staticArguments.collect { transform(it) })
+                }
+            }
+
+            expression.transformExpression(this)
+        }
+
+    }
+    transformer.visitMethod(method)
+}
@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Records.aggregate;
+import static hrytsenko.csv.Records.avg;
+import static hrytsenko.csv.Records.count;
+import static hrytsenko.csv.Records.max;
+import static hrytsenko.csv.Records.min;
+import static hrytsenko.csv.Records.record;
+import static hrytsenko.csv.Records.sum;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for aggregation of records.
+ * 
+ * @author hrytsenko.anton
+ */
+public class AggregateTest {
+
+    private List<Record> trades;
+
+    @Before
+    public void init() {
+        trades = asList(record("ticker", "GOOG", "exchange", "NASDAQ", "qty", "10", "price", "540.5"),
+                record("ticker", "ORCL", "exchange", "NYSE", "qty", "40", "price", "40"),
+                record("ticker", "GOOG", "exchange", "NASDAQ", "qty", "30", "price", "538"),
+                record("ticker", "MSFT", "exchange", "NASDAQ", "qty", "", "price", "9.5"));
+    }
+
+    @Test
+    public void testAggregate() {
+        List<Record> result = aggregate(args("ticker"), count(), sum("qty"), min("price:double"),
+                max("price:double"), avg("qty"));
+
+        assertEquals(asList("ticker", "count", "sum_qty", "min_price", "max_price", "avg_qty"), result.get(0)
+                .fields());
+        assertEquals(asList("GOOG", "2", "40", "538", "540.5", "20.0"), values(result.get(0)));
+        assertEquals(asList("ORCL", "1", "40", "40", "40", "40.0"), values(result.get(1)));
+        assertEquals(asList("MSFT", "1", "", "9.5", "9.5", ""), values(result.get(2)));
+    }
+
+    @Test
+    public void testAggregateAll() {
+        List<Record> result = aggregate(args(null), count("qty"), sum("price").named("total"), min("price"));
+
+        assertEquals(1, result.size());
+        assertEquals(asList("3", "1128.0", "40"), values(result.get(0)));
+    }
+
+    @Test
+    public void testAggregateSeveralFields() {
+        Map<String, Object> args = args(null);
+        args.put("by", asList("exchange", "ticker"));
+
+        List<Record> result = aggregate(args, count());
+
+        assertEquals(3, result.size());
+        assertEquals(asList("NASDAQ", "GOOG", "2"), values(result.get(0)));
+    }
+
+    @Test
+    public void testAggregateTyped() {
+        Header header = new Header(new String[] { "ticker", "qty", "price" }, new FieldType[] { null, FieldType.LONG,
+                FieldType.DOUBLE });
+        trades = asList(new Record(header, new String[] { "GOOG", "10", "540.5" }),
+                new Record(header, new String[] { "GOOG", "30", "538" }),
+                new Record(header, new String[] { "GOOG", "", "1e3" }));
+
+        List<Record> result = aggregate(args("ticker"), count("qty"), sum("qty"), sum("price"), min("price:double"),
+                max("price:double"));
+
+        assertEquals(asList("GOOG", "2", "40", "2078.5", "538", "1e3"), values(result.get(0)));
+    }
+
+    @Test
+    public void testAggregateAbsentKey() {
+        trades = asList(record("ticker", "GOOG", "qty", "10"), record("qty", "20"), record("ticker", "", "qty", "30"));
+
+        List<Record> result = aggregate(args("ticker"), sum("qty"));
+
+        assertEquals(2, result.size());
+        assertEquals(asList("", "50"), values(result.get(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldsNotUnique() {
+        aggregate(args("ticker"), count(), count().named("ticker"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeNotSupported() {
+        min("price:decimal");
+    }
+
+    private Map<String, Object> args(String by) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("records", trades);
+        if (by != null) {
+            args.put("by", by);
+        }
+        return args;
+    }
+
+    private static List<String> values(Record record) {
+        return asList(record.values().values().toArray(new String[0]));
+    }
+
+}
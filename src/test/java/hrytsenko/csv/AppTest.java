@@ -21,6 +21,7 @@ package hrytsenko.csv;
 
 import static hrytsenko.csv.App.main;
 import static hrytsenko.csv.Args.SCRIPTS_OPT_NAME;
+import static hrytsenko.csv.Args.STATIC_OPT_NAME;
 import static hrytsenko.csv.Args.VALUES_OPT_NAME;
 import static hrytsenko.csv.TempFiles.createTempFile;
 import static hrytsenko.csv.TempFiles.writeTempFile;
@@ -90,8 +91,31 @@ public class AppTest {
         executeScript("RecordsTest.groovy");
     }
 
+    @Test
+    public void testStream() throws Exception {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,exchange\nGOOG,NASDAQ\nORCL,NYSE\nMSFT,NASDAQ";
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+        executeScript("StreamTest.groovy", tempFilePath);
+    }
+
+    @Test
+    public void testStatic() throws Exception {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,exchange\nGOOG,NASDAQ\nORCL,NYSE\nMSFT,NASDAQ";
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+        executeScript("StaticTest.groovy", true, tempFilePath);
+    }
+
     private void executeScript(String script, String... values) throws Exception {
+        executeScript(script, false, values);
+    }
+
+    private void executeScript(String script, boolean compileStatic, String... values) throws Exception {
         List<String> args = new ArrayList<>();
+        if (compileStatic) {
+            args.add("--" + STATIC_OPT_NAME);
+        }
         args.add("-" + SCRIPTS_OPT_NAME);
         args.add(getPath(script));
         if (values.length > 0) {
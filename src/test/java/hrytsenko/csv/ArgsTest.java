@@ -21,6 +21,8 @@ package hrytsenko.csv;
 
 import static hrytsenko.csv.Args.parseArgs;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.commons.cli.ParseException;
 import org.junit.Test;
@@ -44,4 +46,10 @@ public class ArgsTest {
         assertArrayEquals(new String[] { "stocks.csv", "NASDAQ" }, args.getValues().toArray());
     }
 
+    @Test
+    public void testStatic() throws Exception {
+        assertFalse(parseArgs(new String[] { "-s", "stocks.groovy" }).isCompileStatic());
+        assertTrue(parseArgs(new String[] { "--static", "-s", "stocks.groovy" }).isCompileStatic());
+    }
+
 }
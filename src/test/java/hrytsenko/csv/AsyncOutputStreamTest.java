@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for output stream, that writes data in background.
+ * 
+ * @author hrytsenko.anton
+ */
+public class AsyncOutputStreamTest {
+
+    @Test
+    public void testWrite() throws IOException {
+        byte[] data = new byte[5 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(data);
+
+        Path path = createTempFile();
+        try (AsyncOutputStream stream = AsyncOutputStream.open(path)) {
+            stream.write(data[0]);
+            int offset = 1;
+            for (int length = 1; offset < data.length; length = length * 3 + 1) {
+                int count = Math.min(length, data.length - offset);
+                stream.write(data, offset, count);
+                offset += count;
+            }
+        }
+
+        assertArrayEquals(data, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        byte[] data = new byte[1024];
+        Arrays.fill(data, (byte) 'a');
+
+        Path path = createTempFile();
+        try (AsyncOutputStream stream = AsyncOutputStream.open(path)) {
+            stream.write(data);
+            stream.flush();
+            assertEquals(data.length, Files.size(path));
+
+            stream.write(data);
+        }
+
+        assertEquals(2 * data.length, Files.size(path));
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteFailed() throws IOException {
+        WritableByteChannel channel = new WritableByteChannel() {
+
+            private boolean open = true;
+
+            @Override
+            public int write(ByteBuffer data) {
+                throw new IllegalStateException("Channel failed.");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+
+        };
+
+        AsyncOutputStream stream = new AsyncOutputStream(channel);
+        byte[] data = new byte[1024 * 1024];
+        try {
+            for (int i = 0; i < 5; ++i) {
+                stream.write(data);
+            }
+            fail();
+        } catch (IOException exception) {
+            assertEquals("Channel failed.", exception.getCause().getMessage());
+        }
+
+        try {
+            stream.close();
+            fail();
+        } catch (IOException exception) {
+            assertEquals("Channel failed.", exception.getCause().getMessage());
+        }
+        assertFalse(channel.isOpen());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteClosed() throws IOException {
+        AsyncOutputStream stream = AsyncOutputStream.open(createTempFile());
+        stream.close();
+        stream.flush();
+    }
+
+    private static Path createTempFile() throws IOException {
+        Path path = Files.createTempFile(null, ".bin");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+}
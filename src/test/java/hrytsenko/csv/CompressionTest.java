@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Fixtures.asArgs;
+import static hrytsenko.csv.IO.load;
+import static hrytsenko.csv.IO.save;
+import static hrytsenko.csv.Records.record;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests for compressed files.
+ * 
+ * <p>
+ * These tests use temporary files.
+ * 
+ * @author hrytsenko.anton
+ */
+public class CompressionTest {
+
+    @Test
+    public void testGzip() throws IOException {
+        Path path = createTempFile(".csv.gz");
+        List<Record> records = createRecords(100000);
+
+        save(asArgs("path", path.toString(), "records", records, "threads", 4));
+        assertTrue(Compression.isCompressed(path));
+
+        List<Record> loadedRecords = load(asArgs("path", path.toString()));
+        assertRecords(records, loadedRecords);
+    }
+
+    @Test
+    public void testGzipStandard() throws IOException {
+        byte[] data = createData(1000000);
+
+        Path path = createTempFile(".gz");
+        try (OutputStream compressed = new ParallelGzipOutputStream(Files.newOutputStream(path), 3)) {
+            compressed.write(data);
+        }
+
+        try (InputStream uncompressed = new GZIPInputStream(Files.newInputStream(path))) {
+            ByteArrayOutputStream actualData = new ByteArrayOutputStream();
+            IOUtils.copy(uncompressed, actualData);
+            assertArrayEquals(data, actualData.toByteArray());
+        }
+    }
+
+    @Test
+    public void testGzipEmpty() throws IOException {
+        Path path = createTempFile(".gz");
+        new ParallelGzipOutputStream(Files.newOutputStream(path), 1).close();
+
+        try (InputStream uncompressed = new GZIPInputStream(Files.newInputStream(path))) {
+            assertEquals(-1, uncompressed.read());
+        }
+    }
+
+    @Test
+    public void testGzipByContent() throws IOException {
+        Path path = createTempFile(".csv");
+        try (OutputStream compressed = new GZIPOutputStream(Files.newOutputStream(path))) {
+            compressed.write("ticker,name\nGOOG,Google\n".getBytes(UTF_8));
+        }
+
+        List<Record> records = load(asArgs("path", path.toString(), "parallel", true));
+        assertEquals(1, records.size());
+        assertEquals("Google", records.get(0).getAt("name"));
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        Path path = createTempFile(".csv.deflate");
+        List<Record> records = createRecords(1000);
+
+        save(asArgs("path", path.toString(), "records", records));
+        assertTrue(Compression.isCompressed(path));
+
+        List<Record> loadedRecords = load(asArgs("path", path.toString()));
+        assertRecords(records, loadedRecords);
+    }
+
+    private static Path createTempFile(String suffix) throws IOException {
+        Path path = Files.createTempFile(null, suffix);
+        path.toFile().deleteOnExit();
+        return Paths.get(path.toAbsolutePath().toString());
+    }
+
+    private static List<Record> createRecords(int count) {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            records.add(record("id", Integer.toString(i), "name", "name " + i % 100));
+        }
+        return records;
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            data[i] = (byte) ('a' + (i * 31 + i / 7) % 26);
+        }
+        return data;
+    }
+
+    private static void assertRecords(List<Record> expected, List<Record> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).values(), actual.get(i).values());
+        }
+    }
+
+}
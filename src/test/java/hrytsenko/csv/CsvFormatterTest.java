@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+/**
+ * Tests for formatting of CSV data.
+ * 
+ * @author hrytsenko.anton
+ */
+public class CsvFormatterTest {
+
+    @Test
+    public void testQualified() throws IOException {
+        StringWriter out = new StringWriter();
+        CsvFormatter formatter = new CsvFormatter(out, ',', '"');
+
+        formatter.value("GOOG");
+        formatter.value("Google, Inc.");
+        formatter.value("\"Alphabet\"");
+        formatter.endRow();
+        formatter.value("line\nbreak".toCharArray(), 0, 10);
+        formatter.value("");
+        formatter.endRow();
+        formatter.flush();
+
+        assertEquals("GOOG,\"Google, Inc.\",\"\"\"Alphabet\"\"\"\n\"line\nbreak\",\n", out.toString());
+    }
+
+    @Test
+    public void testSingleEmptyValue() throws IOException {
+        StringWriter out = new StringWriter();
+        CsvFormatter formatter = new CsvFormatter(out, ',', '"');
+
+        formatter.value("x");
+        formatter.endRow();
+        formatter.value("");
+        formatter.endRow();
+        formatter.value(new char[0], 0, 0);
+        formatter.value("");
+        formatter.endRow();
+        formatter.flush();
+
+        assertEquals("x\n\"\"\n,\n", out.toString());
+    }
+
+    @Test
+    public void testLongValues() throws IOException {
+        StringWriter out = new StringWriter();
+        CsvFormatter formatter = new CsvFormatter(out, ';', '\'');
+
+        String value = StringUtils.repeat("ab'", 50000);
+        formatter.value(value);
+        formatter.value(value.toCharArray(), 0, value.length());
+        formatter.endRow();
+        formatter.flush();
+
+        String qualified = "'" + value.replace("'", "''") + "'";
+        assertEquals(qualified + ";" + qualified + "\n", out.toString());
+    }
+
+}
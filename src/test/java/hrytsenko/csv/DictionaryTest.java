@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Fixtures.asArgs;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for dictionary of values.
+ * 
+ * @author hrytsenko.anton
+ */
+public class DictionaryTest {
+
+    @Test
+    public void testIntern() {
+        Dictionary dictionary = new Dictionary(false);
+
+        String value = dictionary.intern(CharBuffer.wrap("NYSE"));
+        assertEquals("NYSE", value);
+        assertSame(value, dictionary.intern(CharBuffer.wrap("NYSE")));
+        assertSame(value, dictionary.intern(new String("NYSE")));
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void testFull() {
+        Dictionary dictionary = new Dictionary(false);
+        for (int i = 0; i < 5000; ++i) {
+            dictionary.intern("value" + i);
+        }
+
+        assertEquals(4096, dictionary.size());
+        assertSame(dictionary.intern("value0"), dictionary.intern("value0"));
+        assertNotSame(dictionary.intern(new String("value4999")), dictionary.intern(new String("value4999")));
+    }
+
+    @Test
+    public void testFullAuto() {
+        Dictionary dictionary = new Dictionary(true);
+        for (int i = 0; i < 5000; ++i) {
+            dictionary.intern("value" + i);
+        }
+
+        assertNotSame(dictionary.intern(new String("value0")), dictionary.intern(new String("value0")));
+    }
+
+    @Test
+    public void testForFields() {
+        String[] fields = { "ticker", "exchange" };
+
+        Dictionary[] dictionaries = Dictionary.forFields(fields, asArgs("dictionary", asList("exchange")));
+        assertNull(dictionaries[0]);
+        assertNotNull(dictionaries[1]);
+
+        dictionaries = Dictionary.forFields(fields, asArgs("dictionary", true));
+        assertNotNull(dictionaries[0]);
+        assertNotNull(dictionaries[1]);
+
+        dictionaries = Dictionary.forFields(fields, asArgs());
+        assertNull(dictionaries[0]);
+        assertNull(dictionaries[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForFieldsInvalid() {
+        Dictionary.forFields(new String[] { "ticker" }, asArgs("dictionary", "ticker"));
+    }
+
+}
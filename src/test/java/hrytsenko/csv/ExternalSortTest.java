@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Records.record;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for sorting of records.
+ * 
+ * @author hrytsenko.anton
+ */
+public class ExternalSortTest {
+
+    @Test
+    public void testStrings() throws IOException {
+        List<Record> records = asList(record("exchange", "NYSE", "ticker", "ORCL"),
+                record("exchange", "NASDAQ", "ticker", "MSFT"), record("exchange", "NASDAQ", "ticker", "GOOG"),
+                record("ticker", "IBM"));
+
+        List<Record> sorted = sort(asList("exchange", "ticker"), records, 1024 * 1024);
+
+        assertEquals(asList("IBM", "GOOG", "MSFT", "ORCL"), tickers(sorted));
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        List<Record> records = asList(record("ticker", "ORCL", "price", "40.5"),
+                record("ticker", "MSFT", "price", "-1.5"), record("ticker", "GOOG", "price", "540"),
+                record("ticker", "IBM", "price", ""));
+
+        List<Record> sorted = sort(asList("price:double:desc"), records, 1024 * 1024);
+
+        assertEquals(asList("GOOG", "ORCL", "MSFT", "IBM"), tickers(sorted));
+    }
+
+    @Test
+    public void testDates() throws IOException {
+        List<Record> records = asList(record("ticker", "ORCL", "date", "2014-10-01"),
+                record("ticker", "MSFT", "date", "2013-12-31"), record("ticker", "GOOG", "date", "2014-01-15"));
+
+        List<Record> sorted = sort(asList("date:date"), records, 1024 * 1024);
+
+        assertEquals(asList("MSFT", "GOOG", "ORCL"), tickers(sorted));
+    }
+
+    @Test
+    public void testSpilled() throws IOException {
+        Random random = new Random(0);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 50000; ++i) {
+            records.add(record("id", String.valueOf(i), "qty", String.valueOf(random.nextInt(1000))));
+        }
+
+        List<Record> sorted = sort(asList("qty:long"), records, 1);
+
+        assertEquals(records.size(), sorted.size());
+        for (int i = 1; i < sorted.size(); ++i) {
+            long qty = sorted.get(i - 1).getLong("qty");
+            long nextQty = sorted.get(i).getLong("qty");
+            assertTrue(qty <= nextQty);
+            if (qty == nextQty) {
+                assertTrue(sorted.get(i - 1).getLong("id") < sorted.get(i).getLong("id"));
+            }
+        }
+    }
+
+    @Test
+    public void testStoppedEarly() throws IOException {
+        int runs = countRuns();
+
+        Iterator<Record> sorted = new ExternalSort(new SortKey(asList("id")), 1, 2).sort(randomRecords()).iterator();
+        assertTrue(sorted.hasNext());
+        sorted.next();
+
+        assertEquals(runs, countRuns());
+    }
+
+    @Test
+    public void testFailed() throws IOException {
+        int runs = countRuns();
+
+        final List<Record> records = randomRecords();
+        Iterable<Record> failing = new Iterable<Record>() {
+
+            @Override
+            public Iterator<Record> iterator() {
+                final Iterator<Record> iterator = records.iterator();
+                return new Iterator<Record>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    @Override
+                    public Record next() {
+                        if (!iterator.hasNext()) {
+                            throw new IllegalStateException("Could not read records.");
+                        }
+                        return iterator.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+
+                };
+            }
+
+        };
+
+        try {
+            new ExternalSort(new SortKey(asList("id")), 1, 2).sort(failing);
+            fail();
+        } catch (IllegalStateException exception) {
+            assertEquals(runs, countRuns());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeNotSupported() {
+        new SortKey(asList("price:decimal"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoFields() {
+        new SortKey(new ArrayList<String>());
+    }
+
+    private static List<Record> sort(List<String> fields, List<Record> records, long memory) throws IOException {
+        List<Record> sorted = new ArrayList<>();
+        for (Record record : new ExternalSort(new SortKey(fields), memory, 2).sort(records)) {
+            sorted.add(record);
+        }
+        return sorted;
+    }
+
+    private static List<Record> randomRecords() {
+        Random random = new Random(0);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 50000; ++i) {
+            records.add(record("id", String.valueOf(random.nextInt(1000))));
+        }
+        return records;
+    }
+
+    private static int countRuns() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> runs = Files.newDirectoryStream(Paths.get(System.getProperty("java.io.tmpdir")),
+                "*.sort")) {
+            for (Path run : runs) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static List<String> tickers(List<Record> records) {
+        List<String> tickers = new ArrayList<>();
+        for (Record record : records) {
+            tickers.add(record.getAt("ticker"));
+        }
+        return tickers;
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for types of fields.
+ * 
+ * @author hrytsenko.anton
+ */
+public class FieldTypeTest {
+
+    @Test
+    public void testParseLong() {
+        assertEquals(-42L, FieldType.LONG.parse("-42"));
+    }
+
+    @Test
+    public void testParseDouble() {
+        assertEquals(1.5, Double.longBitsToDouble(FieldType.DOUBLE.parse("1.50")), 0);
+    }
+
+    @Test
+    public void testParseDate() {
+        assertEquals(0, FieldType.DATE.parse("1970-01-01"));
+        assertEquals(-1, FieldType.DATE.parse("1969-12-31"));
+        assertEquals(11017, FieldType.DATE.parse("2000-03-01"));
+        assertEquals(19782, FieldType.DATE.parse("2024-02-29"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseDateInvalid() {
+        FieldType.DATE.parse("2023-02-29");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseDateFormat() {
+        FieldType.DATE.parse("01.02.2023");
+    }
+
+    @Test
+    public void testOf() {
+        assertEquals(FieldType.DATE, FieldType.of("date"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfUnknown() {
+        FieldType.of("decimal");
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Fixtures.asArgs;
+import static hrytsenko.csv.Records.record;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import groovy.lang.Closure;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests for filter of rows.
+ * 
+ * @author hrytsenko.anton
+ */
+public class FilterTest {
+
+    @Test
+    public void testEquals() {
+        Filter filter = new Filter(asArgs("exchange", "NYSE", "ticker", 42));
+
+        assertTrue(filter.accepts(record("exchange", "NYSE", "ticker", "42")));
+        assertFalse(filter.accepts(record("exchange", "NYSE", "ticker", "4")));
+        assertFalse(filter.accepts(record("exchange", "NYSE")));
+    }
+
+    @Test
+    public void testIn() {
+        Filter filter = new Filter(asArgs("ticker", asList("Aa", "BB", "ORCL")));
+
+        assertTrue(filter.accepts(record("ticker", "Aa")));
+        assertTrue(filter.accepts(record("ticker", "BB")));
+        assertTrue(filter.accepts(record("ticker", "ORCL")));
+        assertFalse(filter.accepts(record("ticker", "GOOG")));
+    }
+
+    @Test
+    public void testMatches() {
+        Filter filter = new Filter(asArgs("ticker", Pattern.compile("G.*")));
+
+        assertTrue(filter.accepts(0, "GOOG"));
+        assertFalse(filter.accepts(0, "ORCL"));
+    }
+
+    @Test
+    public void testSatisfies() {
+        Filter filter = new Filter(asArgs("price", new Closure<Boolean>(null) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Boolean call(Object... args) {
+                return Double.parseDouble((String) args[0]) > 100;
+            }
+
+        }));
+
+        assertTrue(filter.accepts(0, "101.5"));
+        assertFalse(filter.accepts(0, "99"));
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility methods for preparation and checking of data in tests.
+ * 
+ * @author hrytsenko.anton
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates named arguments from pairs of name and value.
+     * 
+     * @param args
+     *            the names and values, one after another.
+     * 
+     * @return the map of arguments.
+     */
+    public static Map<String, ?> asArgs(Object... args) {
+        Map<String, Object> mappedArgs = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            mappedArgs.put((String) args[i], args[i + 1]);
+        }
+        return mappedArgs;
+    }
+
+    /**
+     * Describes joined records as <code>ticker:qty:name</code>, where absent values are empty.
+     * 
+     * @param records
+     *            the joined records.
+     * 
+     * @return the descriptions of records.
+     */
+    public static List<String> describe(List<Record> records) {
+        List<String> descriptions = new ArrayList<>();
+        for (Record record : records) {
+            Map<String, String> values = record.values();
+            descriptions.add(values.get("ticker") + ":" + nullToEmpty(values.get("qty")) + ":"
+                    + nullToEmpty(values.get("name")));
+        }
+        return descriptions;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Globs.find;
+import static hrytsenko.csv.Globs.isGlob;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * Tests for search of files by patterns.
+ * 
+ * @author hrytsenko.anton
+ */
+public class GlobsTest {
+
+    @Test
+    public void testIsGlob() {
+        assertTrue(isGlob("data/*.csv"));
+        assertTrue(isGlob("data/part-?.csv"));
+        assertFalse(isGlob("data/part-1.csv"));
+    }
+
+    @Test
+    public void testFind() throws IOException {
+        Path directory = Files.createTempDirectory(null);
+        Path first = Files.createFile(Files.createDirectory(directory.resolve("2026-01")).resolve("part-1.csv"));
+        Path second = Files.createFile(Files.createDirectory(directory.resolve("2026-02")).resolve("part-1.csv"));
+        Files.createFile(directory.resolve("2026-02").resolve("part-1.txt"));
+        Files.createFile(directory.resolve("part-1.csv"));
+
+        assertEquals(asList(first, second), find(directory + "/2026-*/part-*.csv"));
+        assertEquals(asList(first, second), find(directory + "/**/part-*.csv"));
+        assertEquals(asList(), find(directory + "/2027-*/part-*.csv"));
+    }
+
+    @Test
+    public void testFindPath() throws IOException {
+        assertEquals(1, find("missing.csv").size());
+    }
+
+}
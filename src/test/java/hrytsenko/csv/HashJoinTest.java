@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Fixtures.describe;
+import static hrytsenko.csv.Records.record;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for joins of records using hash table.
+ * 
+ * @author hrytsenko.anton
+ */
+public class HashJoinTest {
+
+    private List<Record> stocks;
+    private List<Record> trades;
+
+    @Before
+    public void init() {
+        stocks = asList(record("ticker", "GOOG", "name", "Google"), record("ticker", "ORCL", "name", "Oracle"),
+                record("ticker", "IBM", "name", "IBM"));
+        trades = asList(record("ticker", "GOOG", "qty", "10"), record("ticker", "MSFT", "qty", "20"),
+                record("ticker", "GOOG", "qty", "30"), record("ticker", "ORCL", "qty", "40"));
+    }
+
+    @Test
+    public void testInner() {
+        List<Record> result = join(JoinType.INNER, trades, stocks);
+
+        assertEquals(asList("GOOG:10:Google", "GOOG:30:Google", "ORCL:40:Oracle"), describe(result));
+    }
+
+    @Test
+    public void testInnerTableForLeft() {
+        List<Record> result = join(JoinType.INNER, stocks, trades);
+
+        assertEquals(asList("GOOG:10:Google", "GOOG:30:Google", "ORCL:40:Oracle"), describe(result));
+    }
+
+    @Test
+    public void testLeft() {
+        List<Record> result = join(JoinType.LEFT, stocks, trades);
+
+        assertEquals(asList("GOOG:10:Google", "GOOG:30:Google", "ORCL:40:Oracle", "IBM::IBM"), describe(result));
+    }
+
+    @Test
+    public void testRight() {
+        List<Record> result = join(JoinType.RIGHT, stocks, trades);
+
+        assertEquals(asList("GOOG:10:Google", "MSFT:20:", "GOOG:30:Google", "ORCL:40:Oracle"), describe(result));
+    }
+
+    @Test
+    public void testFull() {
+        List<Record> result = join(JoinType.FULL, trades, stocks);
+
+        assertEquals(asList("GOOG:10:Google", "MSFT:20:", "GOOG:30:Google", "ORCL:40:Oracle", "IBM::IBM"),
+                describe(result));
+    }
+
+    @Test
+    public void testSemi() {
+        List<Record> result = join(JoinType.SEMI, stocks, trades);
+
+        assertEquals(2, result.size());
+        assertSame(stocks.get(0), result.get(0));
+        assertSame(stocks.get(1), result.get(1));
+    }
+
+    @Test
+    public void testAnti() {
+        List<Record> result = join(JoinType.ANTI, trades, stocks);
+
+        assertEquals(1, result.size());
+        assertSame(trades.get(1), result.get(0));
+    }
+
+    @Test
+    public void testStream() {
+        Iterable<Record> stream = new ArrayList<>(trades).subList(0, 4);
+        List<Record> result = new HashJoin("ticker", JoinType.LEFT).join(stream, stocks);
+
+        assertEquals(asList("GOOG:10:Google", "MSFT:20:", "GOOG:30:Google", "ORCL:40:Oracle"), describe(result));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyNotFound() {
+        join(JoinType.INNER, asList(record("symbol", "GOOG")), stocks);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeNotSupported() {
+        JoinType.of("cross");
+    }
+
+    private static List<Record> join(JoinType type, List<Record> leftSet, List<Record> rightSet) {
+        return new HashJoin("ticker", type).join(leftSet, rightSet);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for header of records.
+ * 
+ * @author hrytsenko.anton
+ */
+public class HeaderTest {
+
+    @Test
+    public void testIndexOf() {
+        Header header = new Header("ticker", "name", "exchange");
+
+        assertEquals(0, header.indexOf("ticker"));
+        assertEquals(2, header.indexOf("exchange"));
+        assertEquals(-1, header.indexOf("Ticker"));
+    }
+
+    @Test
+    public void testDerived() {
+        Header header = new Header("ticker", "name");
+
+        Header added = header.add("exchange");
+        assertEquals(asList("ticker", "name", "exchange"), added.fields());
+        assertSame(added, header.add("exchange"));
+
+        Header renamed = header.rename(1, "company");
+        assertEquals(asList("ticker", "company"), renamed.fields());
+        assertSame(renamed, header.rename(1, "company"));
+
+        BitSet retained = new BitSet();
+        retained.set(1);
+        Header retainedHeader = header.retain(retained);
+        assertEquals(asList("name"), retainedHeader.fields());
+        assertSame(retainedHeader, header.retain((BitSet) retained.clone()));
+    }
+
+    @Test
+    public void testSlots() {
+        Header header = new Header(new String[] { "ticker", "qty", "name", "price" }, new FieldType[] { null,
+                FieldType.LONG, null, FieldType.DOUBLE });
+        assertEquals(2, header.slotCount());
+        assertEquals(-1, header.slot(0));
+        assertEquals(0, header.slot(1));
+        assertEquals(1, header.slot(3));
+
+        Header untyped = header.untype(1);
+        assertEquals(-1, untyped.slot(1));
+        assertEquals(1, untyped.slot(3));
+        assertEquals(-1, untyped.add("exchange").slot(4));
+
+        BitSet retained = new BitSet();
+        retained.set(2, 4);
+        Header retainedHeader = header.retain(retained);
+        assertEquals(1, retainedHeader.slotCount());
+        assertEquals(0, retainedHeader.slot(1));
+    }
+
+    @Test
+    public void testDerivedCollected() throws Exception {
+        Header header = new Header("id");
+        WeakReference<Header> derived = new WeakReference<>(header.add("field").add("next"));
+
+        for (int i = 0; i < 10 && derived.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(derived.get());
+    }
+
+}
@@ -19,11 +19,16 @@
  */
 package hrytsenko.csv;
 
+import static hrytsenko.csv.Fixtures.asArgs;
 import static hrytsenko.csv.IO.getCharset;
 import static hrytsenko.csv.IO.getPath;
-import static hrytsenko.csv.IO.getSchema;
+import static hrytsenko.csv.IO.getQualifier;
+import static hrytsenko.csv.IO.getSeparator;
 import static hrytsenko.csv.IO.load;
+import static hrytsenko.csv.IO.loadAll;
 import static hrytsenko.csv.IO.save;
+import static hrytsenko.csv.IO.stream;
+import static hrytsenko.csv.IO.writer;
 import static hrytsenko.csv.Records.record;
 import static hrytsenko.csv.TempFiles.createTempFile;
 import static hrytsenko.csv.TempFiles.readTempFile;
@@ -31,18 +36,25 @@ import static hrytsenko.csv.TempFiles.writeTempFile;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonMap;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
 
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
-
 /**
  * Tests of methods for input/output.
  * 
@@ -64,37 +76,35 @@ public class IOTest {
     }
 
     @Test
-    public void testGetSchemaDefault() {
-        CsvSchema schema = getSchema(asArgs()).build();
-        assertEquals(',', schema.getColumnSeparator());
-        assertEquals('"', schema.getQuoteChar());
+    public void testGetSeparatorAndQualifierDefault() {
+        assertEquals(',', getSeparator(asArgs()));
+        assertEquals('"', getQualifier(asArgs()));
     }
 
     @Test
-    public void testGetSchema() {
-        CsvSchema schema = getSchema(asArgs("separator", "\t", "qualifier", "`")).build();
-        assertEquals('\t', schema.getColumnSeparator());
-        assertEquals('`', schema.getQuoteChar());
+    public void testGetSeparatorAndQualifier() {
+        assertEquals('\t', getSeparator(asArgs("separator", "\t")));
+        assertEquals('`', getQualifier(asArgs("qualifier", "`")));
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testGetSchemaSeparatorEmpty() {
-        getSchema(asArgs("separator", ""));
+    public void testGetSeparatorEmpty() {
+        getSeparator(asArgs("separator", ""));
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testGetSchemaSeparatorInvalid() {
-        getSchema(asArgs("separator", ", "));
+    public void testGetSeparatorInvalid() {
+        getSeparator(asArgs("separator", ", "));
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testGetSchemaQualifierEmpty() {
-        getSchema(asArgs("qualifier", ""));
+    public void testGetQualifierEmpty() {
+        getQualifier(asArgs("qualifier", ""));
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testGetSchemaQualifierInvalid() {
-        getSchema(asArgs("qualifier", "//"));
+    public void testGetQualifierInvalid() {
+        getQualifier(asArgs("qualifier", "//"));
     }
 
     @Test
@@ -110,6 +120,20 @@ public class IOTest {
         assertEquals("ticker,name\nGOOG,Google\nORCL,Oracle\n", tempFileData);
     }
 
+    @Test
+    public void testSaveAndLoadEmptyValue() throws IOException {
+        List<Record> records = asList(record("a", "x"), record("a", ""), record("a", "y"));
+
+        String tempFilePath = createTempFile();
+        save(asArgs("path", tempFilePath, "records", records));
+
+        List<Record> loaded = load(asArgs("path", tempFilePath));
+
+        assertEquals(3, loaded.size());
+        assertEquals("", loaded.get(1).getAt("a"));
+        assertEquals("y", loaded.get(2).getAt("a"));
+    }
+
     @Test
     public void testSaveNothing() throws IOException {
         List<Record> records = emptyList();
@@ -122,6 +146,69 @@ public class IOTest {
         assertEquals(EMPTY, tempFileData);
     }
 
+    @Test
+    public void testSaveIterator() throws IOException {
+        List<Record> records = asList(record("ticker", "GOOG", "name", "Google"), record("ticker", "ORCL"));
+
+        String tempFilePath = createTempFile();
+        save(asArgs("path", tempFilePath, "records", records.iterator()));
+
+        String tempFileData = readTempFile(tempFilePath, UTF_8);
+
+        assertEquals("ticker,name\nGOOG,Google\nORCL,\n", tempFileData);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSaveIteratorFieldNotInHeader() throws IOException {
+        List<Record> records = asList(record("ticker", "GOOG"), record("ticker", "ORCL", "name", "Oracle"));
+
+        String tempFilePath = createTempFile();
+        save(asArgs("path", tempFilePath, "records", records.iterator()));
+    }
+
+    @Test
+    public void testSaveColumns() throws IOException {
+        List<Record> records = asList(record("ticker", "GOOG", "name", "Google"),
+                record("ticker", "ORCL", "name", "Oracle"));
+
+        String tempFilePath = createTempFile();
+        save(asArgs("path", tempFilePath, "records", records, "columns", asList("name")));
+
+        String tempFileData = readTempFile(tempFilePath, UTF_8);
+
+        assertEquals("name\nGoogle\nOracle\n", tempFileData);
+    }
+
+    @Test
+    public void testSaveAsync() throws IOException {
+        List<Record> records = asList(record("ticker", "GOOG", "name", "Google"),
+                record("ticker", "ORCL", "name", "Oracle"));
+
+        String tempFilePath = createTempFile();
+        save(asArgs("path", tempFilePath, "records", records, "async", true));
+
+        String tempFileData = readTempFile(tempFilePath, UTF_8);
+
+        assertEquals("ticker,name\nGOOG,Google\nORCL,Oracle\n", tempFileData);
+    }
+
+    @Test
+    public void testWriter() throws IOException {
+        String tempFilePath = createTempFile();
+        try (RecordWriter writer = writer(asArgs("path", tempFilePath))) {
+            writer.write(record("ticker", "GOOG", "name", "Google"));
+            writer.flush();
+
+            assertEquals("ticker,name\nGOOG,Google\n", readTempFile(tempFilePath, UTF_8));
+
+            writer.write(record("ticker", "ORCL", "name", "Oracle"));
+        }
+
+        String tempFileData = readTempFile(tempFilePath, UTF_8);
+
+        assertEquals("ticker,name\nGOOG,Google\nORCL,Oracle\n", tempFileData);
+    }
+
     @Test
     public void testLoad() throws IOException {
         String tempFilePath = createTempFile();
@@ -136,12 +223,225 @@ public class IOTest {
         assertEquals("ORCL", records.get(1).getAt("ticker"));
     }
 
-    private static Map<String, ?> asArgs(Object... args) {
-        Map<String, Object> mappedArgs = new HashMap<>();
-        for (int i = 0; i < args.length; i += 2) {
-            mappedArgs.put((String) args[i], args[i + 1]);
+    @Test
+    public void testLoadColumns() throws IOException {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,name,exchange\nGOOG,Google,NASDAQ\nORCL,Oracle\n";
+
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+
+        List<Record> records = load(asArgs("path", tempFilePath, "columns", asList("exchange", "ticker")));
+
+        assertEquals(2, records.size());
+        assertEquals(asList("exchange", "ticker"), records.get(0).fields());
+        assertEquals("NASDAQ", records.get(0).getAt("exchange"));
+        assertEquals(asList("ticker"), records.get(1).fields());
+        assertEquals("ORCL", records.get(1).getAt("ticker"));
+    }
+
+    @Test
+    public void testLoadColumnsDuplicate() throws IOException {
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, "x,y,x\n1,2,3\n", UTF_8);
+
+        assertEquals("3", load(asArgs("path", tempFilePath)).get(0).getAt("x"));
+        assertEquals("3", load(asArgs("path", tempFilePath, "columns", asList("x"))).get(0).getAt("x"));
+        assertEquals(1, load(asArgs("path", tempFilePath, "where", singletonMap("x", "3"))).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadColumnNotFound() throws IOException {
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, "ticker,name\nGOOG,Google\n", UTF_8);
+
+        load(asArgs("path", tempFilePath, "columns", asList("exchange")));
+    }
+
+    @Test
+    public void testLoadWhere() throws IOException {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,exchange\nGOOG,NASDAQ\nORCL,NYSE\nMSFT,NASDAQ\nIBM\n";
+
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+
+        List<Record> records = load(asArgs("path", tempFilePath, "where", asArgs("exchange", "NASDAQ")));
+
+        assertEquals(2, records.size());
+        assertEquals("GOOG", records.get(0).getAt("ticker"));
+        assertEquals("MSFT", records.get(1).getAt("ticker"));
+
+        records = load(asArgs("path", tempFilePath, "columns", asList("ticker"), "where",
+                asArgs("exchange", asList("NYSE", "LSE"), "ticker", Pattern.compile("[A-Z]{4}"))));
+
+        assertEquals(1, records.size());
+        assertEquals(asList("ticker"), records.get(0).fields());
+        assertEquals("ORCL", records.get(0).getAt("ticker"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadWhereInvalid() throws IOException {
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, "ticker\nGOOG\n", UTF_8);
+
+        load(asArgs("path", tempFilePath, "where", "ticker"));
+    }
+
+    @Test
+    public void testLoadDictionary() throws IOException {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,exchange\nGOOG,NASDAQ\nORCL,NYSE\nMSFT,NASDAQ\n";
+
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+
+        List<Record> records = load(asArgs("path", tempFilePath, "dictionary", asList("exchange")));
+
+        assertSame(records.get(0).getAt("exchange"), records.get(2).getAt("exchange"));
+        assertNotSame(records.get(0).getAt("ticker"), records.get(2).getAt("ticker"));
+    }
+
+    @Test
+    public void testLoadTypes() throws IOException {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,qty,price,date\nGOOG,10,501.5,2015-01-02\nORCL,,40,2015-01-05\n";
+
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+
+        List<Record> records = load(asArgs("path", tempFilePath, "types",
+                asArgs("qty", "long", "price", "double", "date", "date")));
+
+        assertEquals(10L, records.get(0).getLong("qty"));
+        assertEquals(501.5, records.get(0).getDouble("price"), 0);
+        assertEquals(40.0, records.get(1).getDouble("price"), 0);
+        assertEquals(16440L * 24 * 60 * 60 * 1000, records.get(1).getDate("date").getTime());
+        assertEquals("", records.get(1).getAt("qty"));
+
+        records.get(1).putAt("qty", 5);
+        assertEquals(5L, records.get(1).getLong("qty"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadTypesColumnNotFound() throws IOException {
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, "ticker,qty\nGOOG,10\n", UTF_8);
+
+        load(asArgs("path", tempFilePath, "types", asArgs("qyt", "long")));
+    }
+
+    @Test
+    public void testLoadLazy() throws IOException {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,name,note\nGOOG,Google,\"a, \"\"b\"\"\"\nORCL,Oracle,c\n";
+
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+
+        List<Record> records = load(asArgs("path", tempFilePath, "lazy", true));
+        assertEquals("a, \"b\"", records.get(0).getAt("note"));
+
+        records.get(1).putAt("name", "Oracle Corp.");
+
+        String savedFilePath = createTempFile();
+        save(asArgs("path", savedFilePath, "records", records));
+
+        assertEquals("ticker,name,note\nGOOG,Google,\"a, \"\"b\"\"\"\nORCL,Oracle Corp.,c\n",
+                readTempFile(savedFilePath, UTF_8));
+    }
+
+    @Test
+    public void testLoadTable() throws IOException {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,name\nGOOG,Google\nORCL,Oracle\n";
+
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+
+        List<Record> records = load(asArgs("path", tempFilePath, "table", true));
+        assertTrue(records instanceof RecordTable);
+
+        String savedFilePath = createTempFile();
+        save(asArgs("path", savedFilePath, "records", records));
+
+        assertEquals(tempFileData, readTempFile(savedFilePath, UTF_8));
+    }
+
+    @Test
+    public void testLoadTableWithClosure() throws IOException {
+        Path directory = Files.createTempDirectory(null);
+        Files.write(directory.resolve("part-1.csv"), "ticker\nGOOG\nORCL\n".getBytes(UTF_8));
+
+        List<Record> records = IO.load(asArgs("paths", directory.toString() + "/part-*.csv", "table", true),
+                new groovy.lang.Closure<Void>(null) {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public Void call(Object... args) {
+                        ((Record) args[0]).putAt("exchange", "NASDAQ");
+                        return null;
+                    }
+
+                });
+
+        assertTrue(records instanceof RecordTable);
+        assertEquals("NASDAQ", records.get(1).getAt("exchange"));
+    }
+
+    @Test
+    public void testLoadPathsTable() throws IOException {
+        Path directory = Files.createTempDirectory(null);
+        Files.write(directory.resolve("part-1.csv"), "ticker\nGOOG\nORCL\n".getBytes(UTF_8));
+        Files.write(directory.resolve("part-2.csv"), "ticker\nMSFT\n".getBytes(UTF_8));
+
+        List<Record> records = load(asArgs("paths", directory.toString() + "/part-*.csv", "table", true));
+
+        assertTrue(records instanceof RecordTable);
+        assertEquals(3, records.size());
+        assertEquals("MSFT", records.get(2).getAt("ticker"));
+    }
+
+    @Test
+    public void testLoadPaths() throws IOException {
+        Path directory = Files.createTempDirectory(null);
+        Path first = Files.write(directory.resolve("part-1.csv"), "ticker\nGOOG\nORCL\n".getBytes(UTF_8));
+        Path second = Files.write(directory.resolve("part-2.csv"), "ticker\nMSFT\n".getBytes(UTF_8));
+        Files.write(directory.resolve("other.csv"), "ticker\nIBM\n".getBytes(UTF_8));
+
+        String pattern = directory.toString() + "/part-*.csv";
+
+        List<Record> records = load(asArgs("paths", pattern, "threads", 2));
+
+        assertEquals(3, records.size());
+        assertEquals("GOOG", records.get(0).getAt("ticker"));
+        assertEquals("MSFT", records.get(2).getAt("ticker"));
+
+        Map<String, List<Record>> loaded = loadAll(asArgs("paths", asList(second.toString(), first.toString())));
+
+        assertEquals(asList(second.toString(), first.toString()), new ArrayList<>(loaded.keySet()));
+        assertEquals(1, loaded.get(second.toString()).size());
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        String tempFilePath = createTempFile();
+        String tempFileData = "ticker,name\nGOOG,Google\nORCL,Oracle\n";
+
+        writeTempFile(tempFilePath, tempFileData, UTF_8);
+
+        try (RecordStream records = stream(asArgs("path", tempFilePath))) {
+            Iterator<Record> iterator = records.iterator();
+            assertEquals("GOOG", iterator.next().getAt("ticker"));
+            assertEquals("ORCL", iterator.next().getAt("ticker"));
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamIteratedTwice() throws IOException {
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, "ticker\nGOOG\n", UTF_8);
+
+        try (RecordStream records = stream(asArgs("path", tempFilePath))) {
+            records.iterator();
+            records.iterator();
         }
-        return mappedArgs;
     }
 
 }
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Records.distinct;
+import static hrytsenko.csv.Records.group;
+import static hrytsenko.csv.Records.map;
+import static hrytsenko.csv.Records.record;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for parallel processing of records by key.
+ * 
+ * @author hrytsenko.anton
+ */
+public class ParallelIndexTest {
+
+    private List<Record> records;
+
+    @Before
+    public void init() {
+        Random random = new Random(0);
+        records = new ArrayList<>();
+        for (int i = 0; i < 50000; ++i) {
+            records.add(record("id", String.valueOf(i), "key", String.valueOf(random.nextInt(5000))));
+        }
+    }
+
+    @Test
+    public void testDistinct() {
+        assertEquals(distinct("key", records), distinct("key", records, 4));
+    }
+
+    @Test
+    public void testGroup() {
+        Map<String, List<Record>> expected = group("key", records);
+        Map<String, List<Record>> actual = group("key", records, 4);
+
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testMap() {
+        Map<String, Record> expected = map("key", records);
+        Map<String, Record> actual = map("key", records, 3);
+
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (Map.Entry<String, Record> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyNotFound() {
+        records.set(records.size() / 2, record("id", "0"));
+
+        distinct("key", records, 4);
+    }
+
+}
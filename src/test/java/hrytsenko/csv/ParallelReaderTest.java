@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Fixtures.asArgs;
+import static hrytsenko.csv.IO.load;
+import static hrytsenko.csv.TempFiles.createTempFile;
+import static hrytsenko.csv.TempFiles.writeTempFile;
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for parallel parsing of CSV files.
+ * 
+ * <p>
+ * These tests use temporary files, see {@link TempFiles}.
+ * 
+ * @author hrytsenko.anton
+ */
+public class ParallelReaderTest {
+
+    @Test
+    public void testSupported() {
+        assertTrue(ParallelReader.isSupported(asArgs("charset", "UTF-8")));
+        assertTrue(ParallelReader.isSupported(asArgs("charset", "ISO-8859-1")));
+        assertFalse(ParallelReader.isSupported(asArgs("charset", UTF_16.name())));
+        assertFalse(ParallelReader.isSupported(asArgs("charset", "IBM037")));
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        StringBuilder data = new StringBuilder("﻿id,name,comment\n");
+        for (int i = 0; i < 200000; ++i) {
+            data.append(i).append(",\"name, ").append(i).append("\",\"line\nwith \"\"quotes\"\"\"\n");
+        }
+
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, data.toString(), UTF_8);
+
+        List<Record> expected = load(asArgs("path", tempFilePath));
+        List<Record> actual = load(asArgs("path", tempFilePath, "parallel", true, "threads", 4));
+
+        assertEquals(200000, actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).values(), actual.get(i).values());
+        }
+        assertEquals("line\nwith \"quotes\"", actual.get(100000).getAt("comment"));
+    }
+
+    @Test
+    public void testLoadQualifierInValue() throws IOException {
+        StringBuilder data = new StringBuilder("id,size,comment\n0,5\" pipe,\"line\nnext\"\n");
+        for (int i = 1; i < 200000; ++i) {
+            data.append(i).append(",pipe,\"line\nnext\"\n");
+        }
+
+        assertParallel(data.toString(), 200000);
+    }
+
+    @Test
+    public void testLoadCarriageReturns() throws IOException {
+        StringBuilder data = new StringBuilder("id,name\r");
+        for (int i = 0; i < 500000; ++i) {
+            data.append(i).append(",\"name\r").append(i).append("\"\r");
+        }
+
+        assertParallel(data.toString(), 500000);
+    }
+
+    @Test
+    public void testLoadHeaderOnly() throws IOException {
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, "id,name\n", UTF_8);
+
+        assertTrue(load(asArgs("path", tempFilePath, "parallel", true)).isEmpty());
+    }
+
+    private static void assertParallel(String data, int size) throws IOException {
+        String tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, data, UTF_8);
+
+        List<Record> expected = load(asArgs("path", tempFilePath));
+        List<Record> actual = load(asArgs("path", tempFilePath, "parallel", true, "threads", 4));
+
+        assertEquals(size, actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).values(), actual.get(i).values());
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Records.record;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for off-heap table of records.
+ * 
+ * @author hrytsenko.anton
+ */
+public class RecordTableTest {
+
+    @Test
+    public void testAdd() throws IOException {
+        try (RecordTable table = new RecordTable(32)) {
+            table.add(record("ticker", "GOOG", "name", "Google"));
+            table.add(record("ticker", "ORCL", "name", "Oracle Corporation", "exchange", "NYSE"));
+            table.add(record("ticker", "ЯНДЕКС"));
+
+            assertEquals(3, table.size());
+            assertEquals("Google", table.get(0).getAt("name"));
+            assertEquals(asList("ticker", "name", "exchange"), table.get(1).fields());
+            assertEquals("Oracle Corporation", table.get(1).getAt("name"));
+            assertEquals("ЯНДЕКС", table.get(2).getAt("ticker"));
+        }
+    }
+
+    @Test
+    public void testGetValues() throws IOException {
+        try (RecordTable table = new RecordTable()) {
+            table.add(record("ticker", "GOOG", "name", "", "exchange", "NASDAQ"));
+
+            Record record = table.get(0);
+            assertEquals("NASDAQ", record.getAt("exchange"));
+            assertEquals("", record.getAt("name"));
+            assertEquals("GOOG", record.getAt("ticker"));
+            assertEquals(record("ticker", "GOOG", "name", "", "exchange", "NASDAQ").values(), record.values());
+        }
+    }
+
+    @Test
+    public void testSet() throws IOException {
+        try (RecordTable table = new RecordTable(64)) {
+            table.add(record("ticker", "GOOG"));
+
+            Record record = table.get(0).copy();
+            record.putAt("exchange", "NASDAQ");
+            assertNull(table.get(0).getAt("exchange"));
+
+            table.set(0, record);
+            assertEquals("NASDAQ", table.get(0).getAt("exchange"));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws IOException {
+        try (RecordTable table = new RecordTable(64)) {
+            table.add(record("ticker", "GOOG"));
+
+            table.get(0).putAt("exchange", "NASDAQ");
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyRenameAll() throws IOException {
+        try (RecordTable table = new RecordTable(64)) {
+            table.add(record("ticker", "GOOG"));
+
+            Records.renameAll(singletonMap("ticker", "symbol"), table);
+        }
+    }
+
+    @Test
+    public void testTyped() throws IOException {
+        Header header = new Header(new String[] { "ticker", "qty" }, new FieldType[] { null, FieldType.LONG });
+        try (RecordTable table = new RecordTable(asList(new Record(header, new String[] { "GOOG", "10" })))) {
+            assertEquals(10L, table.get(0).getLong("qty"));
+        }
+    }
+
+    @Test
+    public void testRecords() throws IOException {
+        try (RecordTable table = new RecordTable()) {
+            table.add(record("ticker", "GOOG", "exchange", "NASDAQ"));
+            table.add(record("ticker", "ORCL", "exchange", "NYSE"));
+            table.add(record("ticker", "MSFT", "exchange", "NASDAQ"));
+
+            Map<String, List<Record>> grouped = Records.group("exchange", table);
+            assertEquals(2, grouped.get("NASDAQ").size());
+            assertEquals("NYSE", Records.map("ticker", table).get("ORCL").getAt("exchange"));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetIndexInvalid() throws IOException {
+        try (RecordTable table = new RecordTable()) {
+            table.get(0);
+        }
+    }
+
+}
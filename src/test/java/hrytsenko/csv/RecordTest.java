@@ -20,6 +20,7 @@
 package hrytsenko.csv;
 
 import static hrytsenko.csv.Records.record;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -210,6 +211,82 @@ public class RecordTest {
         assertEquals(recordForOracle.values(), result.values());
     }
 
+    @Test
+    public void testSharedHeader() {
+        Header header = new Header("ticker", "name");
+        Record recordForGoogle = new Record(header, new String[] { "GOOG", "Google" });
+        Record recordForMicrosoft = new Record(header, new String[] { "MSFT", "Microsoft" });
+
+        recordForGoogle.rename("name", "company");
+        recordForGoogle.putAt("exchange", "NASDAQ");
+        recordForMicrosoft.remove("ticker");
+
+        assertEquals(asList("ticker", "company", "exchange"), recordForGoogle.fields());
+        assertEquals("Google", recordForGoogle.getAt("company"));
+        assertEquals(asList("name"), recordForMicrosoft.fields());
+        assertEquals("Microsoft", recordForMicrosoft.getAt(0));
+        assertEquals(2, header.size());
+    }
+
+    @Test
+    public void testCopyChanged() {
+        Record copiedRecord = recordForOracle.copy();
+        copiedRecord.remove("name");
+        recordForOracle.putAt("name", "Oracle Corp.");
+
+        assertEquals(asList("ticker", "exchange"), copiedRecord.fields());
+        assertEquals(asList("ticker", "name", "exchange"), recordForOracle.fields());
+        assertEquals("Oracle Corp.", recordForOracle.getAt("name"));
+    }
+
+    @Test
+    public void testGetTyped() {
+        Header header = new Header(new String[] { "ticker", "qty" }, new FieldType[] { null, FieldType.LONG });
+        Record record = new Record(header, new String[] { "GOOG", "10" });
+
+        assertEquals(10L, record.getLong("qty"));
+        assertEquals(10.0, record.getDouble("qty"), 0);
+
+        record.putAt("qty", "many");
+        assertEquals("many", record.getAt("qty"));
+        record.putAt("qty", 20);
+        assertEquals(20L, record.getLong("qty"));
+    }
+
+    @Test
+    public void testRetainTyped() {
+        Header header = new Header(new String[] { "ticker", "qty", "name", "price" }, new FieldType[] { null,
+                FieldType.LONG, null, FieldType.DOUBLE });
+        Record record = new Record(header, new String[] { "GOOG", "10", "Google", "540.5" });
+
+        record.remove("qty");
+        record.putAt("exchange", "NASDAQ");
+
+        assertEquals(540.5, record.getDouble("price"), 0);
+        assertEquals(asList("ticker", "name", "price", "exchange"), record.fields());
+    }
+
+    @Test
+    public void testLazy() {
+        RawRow raw = RawRow.of("GOOGGoogleNASDAQ".toCharArray(), new int[] { 0, 4, 10 }, new int[] { 4, 10, 16 });
+        Record record = new Record(new Header("ticker", "name", "exchange"), new String[3], raw);
+        Record copiedRecord = record.copy();
+
+        assertEquals("Google", record.getAt("name"));
+        record.remove("ticker");
+        record.putAt("exchange", "NYSE");
+
+        assertEquals(asList("name", "exchange"), record.fields());
+        assertEquals("NYSE", record.getAt(1));
+        assertEquals("NASDAQ", copiedRecord.getAt("exchange"));
+        assertEquals("GOOG", copiedRecord.getAt(0));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testGetLongInvalid() {
+        recordForOracle.getLong("ticker");
+    }
+
     @Test
     public void testMerge() {
         Record recordWithName = record("ticker", "ORCL", "name", "Oracle");
@@ -220,6 +297,20 @@ public class RecordTest {
         assertEquals(recordForOracle.values(), result.values());
     }
 
+    @Test
+    public void testMergeTyped() {
+        Header header = new Header(new String[] { "ticker", "qty" }, new FieldType[] { null, FieldType.LONG });
+        Record record = new Record(header, new String[] { "GOOG", "10" });
+        Record result = record.merge(record("ticker", "GOOG", "qty", "20"));
+
+        result.putAt("ticker", "MSFT");
+
+        assertEquals(10L, record.getLong("qty"));
+        assertEquals("GOOG", record.getAt("ticker"));
+        assertEquals(20L, result.getLong("qty"));
+        assertEquals("MSFT", result.getAt("ticker"));
+    }
+
     @Test
     public void testMergeWithNull() {
         Record result = recordForOracle.merge(null);
@@ -19,16 +19,23 @@
  */
 package hrytsenko.csv;
 
+import static hrytsenko.csv.Records.addColumn;
 import static hrytsenko.csv.Records.distinct;
 import static hrytsenko.csv.Records.group;
 import static hrytsenko.csv.Records.map;
 import static hrytsenko.csv.Records.merge;
 import static hrytsenko.csv.Records.record;
+import static hrytsenko.csv.Records.removeAll;
+import static hrytsenko.csv.Records.renameAll;
+import static hrytsenko.csv.Records.retainAll;
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -129,4 +136,52 @@ public class RecordsTest {
         group("symbol", asList(recordForGoogle, recordForOracle));
     }
 
+    @Test
+    public void testRenameAll() {
+        Record recordWithSymbol = record("ticker", "IBM", "symbol", "IBM");
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("ticker", "symbol");
+        fields.put("name", "company");
+        renameAll(fields, asList(recordForGoogle, recordForOracle));
+        renameAll(singletonMap("ticker", "symbol"), asList(recordWithSymbol));
+
+        assertEquals(asList("symbol", "company", "exchange"), recordForGoogle.fields());
+        assertEquals("Oracle", recordForOracle.getAt("company"));
+        assertSame(recordForGoogle.header(), recordForOracle.header());
+        assertEquals(asList("symbol"), recordWithSymbol.fields());
+    }
+
+    @Test
+    public void testRetainAll() {
+        retainAll(asList("name", "ticker"), asList(recordForGoogle, recordForOracle));
+
+        assertEquals(asList("ticker", "name"), recordForGoogle.fields());
+        assertEquals("Oracle", recordForOracle.getAt("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRetainAllFieldNotFound() {
+        retainAll(asList("symbol"), asList(recordForGoogle));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        Record copiedRecord = recordForOracle.copy();
+        removeAll(asList("name"), asList(recordForGoogle, recordForOracle));
+
+        assertEquals(asList("ticker", "exchange"), recordForGoogle.fields());
+        assertEquals("NYSE", recordForOracle.getAt("exchange"));
+        assertEquals("Oracle", copiedRecord.getAt("name"));
+    }
+
+    @Test
+    public void testAddColumn() {
+        Record recordWithCurrency = record("ticker", "SAP", "currency", "EUR");
+        addColumn("currency", "USD", asList(recordForGoogle, recordForOracle, recordWithCurrency));
+
+        assertEquals(asList("ticker", "name", "exchange", "currency"), recordForGoogle.fields());
+        assertEquals("USD", recordForOracle.getAt("currency"));
+        assertEquals("EUR", recordWithCurrency.getAt("currency"));
+    }
+
 }
@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static hrytsenko.csv.Fixtures.asArgs;
+import static hrytsenko.csv.IO.load;
+import static hrytsenko.csv.Snapshot.getSnapshotPath;
+import static hrytsenko.csv.TempFiles.createTempFile;
+import static hrytsenko.csv.TempFiles.writeTempFile;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for snapshots of CSV files.
+ * 
+ * <p>
+ * These tests use temporary files, see {@link TempFiles}.
+ * 
+ * @author hrytsenko.anton
+ */
+public class SnapshotTest {
+
+    private String tempFilePath;
+
+    @Before
+    public void init() throws IOException {
+        tempFilePath = createTempFile();
+        writeTempFile(tempFilePath, "ticker,name,exchange\nGOOG,Google,NASDAQ\nORCL,\"Oracle, Inc\"\n", UTF_8);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(getSnapshotPath(Paths.get(tempFilePath)));
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        List<Record> records = load(asArgs("path", tempFilePath, "snapshot", true));
+        assertTrue(Files.exists(getSnapshotPath(Paths.get(tempFilePath))));
+
+        List<Record> snapshotRecords = load(asArgs("path", tempFilePath, "snapshot", true));
+        assertEquals(records.size(), snapshotRecords.size());
+        for (int i = 0; i < records.size(); ++i) {
+            assertEquals(records.get(i).values(), snapshotRecords.get(i).values());
+        }
+        assertNull(snapshotRecords.get(1).getAt("exchange"));
+    }
+
+    @Test
+    public void testLoadWithClosure() throws IOException {
+        load(asArgs("path", tempFilePath, "snapshot", true), new RenameClosure());
+
+        List<Record> records = load(asArgs("path", tempFilePath, "snapshot", true), new RenameClosure());
+        assertEquals("GOOG", records.get(0).getAt("symbol"));
+    }
+
+    @Test
+    public void testLoadWhereNotInColumns() throws IOException {
+        Map<String, ?> args = asArgs("path", tempFilePath, "snapshot", true, "columns", asList("ticker"), "where",
+                singletonMap("name", "Google"));
+
+        for (int i = 0; i < 2; ++i) {
+            List<Record> records = load(args);
+            assertEquals(1, records.size());
+            assertEquals(asList("ticker"), records.get(0).fields());
+            assertEquals("GOOG", records.get(0).getAt("ticker"));
+        }
+    }
+
+    @Test
+    public void testLoadWhereWithClosure() throws IOException {
+        final List<String> tickers = new ArrayList<>();
+        groovy.lang.Closure<Void> closure = new groovy.lang.Closure<Void>(null) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Void call(Object... args) {
+                tickers.add(((Record) args[0]).getAt("ticker"));
+                return null;
+            }
+
+        };
+
+        for (int i = 0; i < 2; ++i) {
+            tickers.clear();
+            List<Record> records = load(asArgs("path", tempFilePath, "snapshot", true, "where",
+                    singletonMap("ticker", "ORCL")), closure);
+            assertEquals(asList("ORCL"), tickers);
+            assertEquals(1, records.size());
+        }
+    }
+
+    @Test
+    public void testLoadShortRowTyped() throws IOException {
+        writeTempFile(tempFilePath, "id,name,qty\n1,Google,5\n2,Oracle\n", UTF_8);
+        Map<String, ?> args = asArgs("path", tempFilePath, "snapshot", true, "types", singletonMap("id", "long"));
+
+        for (int i = 0; i < 2; ++i) {
+            Record record = load(args).get(1);
+            assertEquals(asList("id", "name"), record.fields());
+            assertEquals(FieldType.LONG, record.header().type(0));
+        }
+    }
+
+    @Test
+    public void testSnapshotTruncated() throws IOException {
+        load(asArgs("path", tempFilePath, "snapshot", true));
+
+        Path snapshotPath = getSnapshotPath(Paths.get(tempFilePath));
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        List<Record> records = load(asArgs("path", tempFilePath, "snapshot", true));
+        assertEquals(2, records.size());
+        assertEquals("Oracle, Inc", records.get(1).getAt("name"));
+    }
+
+    @Test
+    public void testSnapshotCorrupted() throws IOException {
+        load(asArgs("path", tempFilePath, "snapshot", true));
+
+        Path snapshotPath = getSnapshotPath(Paths.get(tempFilePath));
+        byte[] snapshot = Files.readAllBytes(snapshotPath);
+        for (int i = snapshot.length - 12; i < snapshot.length; ++i) {
+            snapshot[i] = (byte) 0xFF;
+        }
+        Files.write(snapshotPath, snapshot);
+
+        List<Record> records = load(asArgs("path", tempFilePath, "snapshot", true));
+        assertEquals(2, records.size());
+        assertEquals("NASDAQ", records.get(0).getAt("exchange"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadTable() throws IOException {
+        load(asArgs("path", tempFilePath, "snapshot", true, "table", true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadLazy() throws IOException {
+        load(asArgs("path", tempFilePath, "snapshot", true, "lazy", true));
+    }
+
+    @Test
+    public void testFileChanged() throws IOException {
+        Path path = Paths.get(tempFilePath);
+        load(asArgs("path", tempFilePath, "snapshot", true));
+
+        FileTime modified = Files.getLastModifiedTime(path);
+        writeTempFile(tempFilePath, "ticker,name,exchange\nMSFT,MSCorp,NASDAQ\nORCL,\"Oracle, Inc\"\n", UTF_8);
+
+        Files.setLastModifiedTime(path, modified);
+        assertEquals("GOOG", load(asArgs("path", tempFilePath, "snapshot", true)).get(0).getAt("ticker"));
+
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertEquals("MSFT", load(asArgs("path", tempFilePath, "snapshot", true)).get(0).getAt("ticker"));
+    }
+
+    @Test
+    public void testOptionsChanged() throws IOException {
+        load(asArgs("path", tempFilePath, "snapshot", true));
+
+        List<Record> records = load(asArgs("path", tempFilePath, "snapshot", true, "separator", "\t"));
+        assertEquals("ticker,name,exchange", records.get(0).fields().iterator().next());
+    }
+
+    private static class RenameClosure extends groovy.lang.Closure<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        RenameClosure() {
+            super(null);
+        }
+
+        @Override
+        public Void call(Object... args) {
+            ((Record) args[0]).rename("ticker", "symbol");
+            return null;
+        }
+
+    }
+
+}
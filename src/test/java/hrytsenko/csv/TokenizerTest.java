@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * csv-scripts
+ * %%
+ * Copyright (C) 2014 Anton Hrytsenko
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hrytsenko.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for tokenizer of CSV data.
+ * 
+ * @author hrytsenko.anton
+ */
+public class TokenizerTest {
+
+    @Test
+    public void testValues() throws IOException {
+        Tokenizer tokenizer = asTokenizer("ticker,name\r\nGOOG,Google\rORCL,\n");
+
+        assertTrue(tokenizer.next());
+        assertArrayEquals(new String[] { "ticker", "name" }, tokenizer.values());
+        assertTrue(tokenizer.next());
+        assertArrayEquals(new String[] { "GOOG", "Google" }, tokenizer.values());
+        assertTrue(tokenizer.next());
+        assertArrayEquals(new String[] { "ORCL", "" }, tokenizer.values());
+        assertFalse(tokenizer.next());
+        assertEquals(3, tokenizer.rows());
+    }
+
+    @Test
+    public void testQualified() throws IOException {
+        Tokenizer tokenizer = asTokenizer("\"Google, Inc.\",\"Say \"\"Hello\"\"\",\"\"\n\"Multi\nline\"");
+
+        assertTrue(tokenizer.next());
+        assertArrayEquals(new String[] { "Google, Inc.", "Say \"Hello\"", "" }, tokenizer.values());
+        assertTrue(tokenizer.next());
+        assertArrayEquals(new String[] { "Multi\nline" }, tokenizer.values());
+        assertFalse(tokenizer.next());
+    }
+
+    @Test
+    public void testEmptyLines() throws IOException {
+        Tokenizer tokenizer = asTokenizer("\nticker\n\n\nGOOG\n\n");
+
+        assertTrue(tokenizer.next());
+        assertEquals("ticker", tokenizer.get(0));
+        assertTrue(tokenizer.next());
+        assertEquals("GOOG", tokenizer.get(0));
+        assertFalse(tokenizer.next());
+    }
+
+    @Test
+    public void testBuffer() throws IOException {
+        Tokenizer tokenizer = new Tokenizer(CharBuffer.wrap("ticker;'name'\nGOOG;'Google'".toCharArray()), ';', '\'');
+
+        assertTrue(tokenizer.next());
+        assertArrayEquals(new String[] { "ticker", "name" }, tokenizer.values());
+        assertTrue(tokenizer.next());
+        assertArrayEquals(new String[] { "GOOG", "Google" }, tokenizer.values());
+        assertFalse(tokenizer.next());
+    }
+
+    private static Tokenizer asTokenizer(String data) {
+        return new Tokenizer(new StringReader(data), ',', '"');
+    }
+
+}
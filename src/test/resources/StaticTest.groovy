@@ -0,0 +1,40 @@
+def records = load(path: args[0]) { record ->
+    record.ticker = record.ticker.toLowerCase()
+}
+assert records.collect { it.ticker } == ['goog', 'orcl', 'msft']
+
+def updated = load(path: args[0]) { record ->
+    record.ticker += '.'
+    record.ticker <<= 1
+    record.exchange -= 'NAS'
+}
+assert updated.collect { it.ticker } == ['GOOG.1', 'ORCL.1', 'MSFT.1']
+assert updated.collect { it.exchange } == ['DAQ', 'NYSE', 'DAQ']
+
+def grouped = records.group('exchange')
+assert grouped['NASDAQ'].size() == 2
+assert records.distinct('exchange') == ['NASDAQ', 'NYSE']
+assert records.map('ticker')['orcl'].exchange == 'NYSE'
+
+def names = [record(ticker: 'orcl', name: 'Oracle')]
+def merged = records.merge('ticker', names)
+assert merged[1].name == 'Oracle'
+assert merged[0].name == null
+
+def count = 0
+stream(path: args[0]).each {
+    if (it.exchange == 'NASDAQ') {
+        count++
+    }
+}
+assert count == 2
+
+def output = File.createTempFile('static', '.csv')
+output.deleteOnExit()
+
+save(path: output.path, columns: ['ticker']) { out ->
+    records.each {
+        out << it
+    }
+}
+assert load(path: output.path).collect { it.ticker } == ['goog', 'orcl', 'msft']
@@ -0,0 +1,21 @@
+def exchanges = stream(path: args[0]).distinct('exchange')
+assert exchanges == ['NASDAQ', 'NYSE']
+
+def count = 0
+stream(path: args[0]) { record ->
+    record.ticker = record.ticker.toLowerCase()
+}.each {
+    assert it.ticker == it.ticker.toLowerCase()
+    count++
+}
+assert count == 3
+
+def output = File.createTempFile('stream', '.csv')
+output.deleteOnExit()
+
+save(path: output.path, columns: ['ticker']) { out ->
+    stream(path: args[0]).each {
+        out << it
+    }
+}
+assert load(path: output.path).collect { it.ticker } == ['GOOG', 'ORCL', 'MSFT']